@@ -52,14 +52,8 @@ public class BuyItem extends Interaction implements Storable, Serializable {
 	@Override
 	public String execute(Player p) {
 		if(p.getInventory().hasRoom()){
-			Coin tempCoin = new Coin();
-			Integer[] coinIndices = p.getInventory().getAllOfType(tempCoin.getClass());
-			if(coinIndices.length >= cost){
-				for(int i=0;i<cost;i++){
-					p.getInventory().removeItem(p.getInventory().getItem(coinIndices[i]));
-				}
-			}
-			else return "You are too poor";
+			if(!p.getInventory().consume(Coin.class, cost))
+				return "You are too poor";
 			p.getInventory().addItem(this.item);
 			this.entity.removeInteraction(this);
 			return "Youve bought a " +this.itemName + " for " + cost + " coins";
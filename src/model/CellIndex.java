@@ -0,0 +1,136 @@
+package model;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps track of which things are on each tile of a zone, so that
+ * finding what is at a point doesn't mean looking at everything in
+ * the zone. Things at points outside the zone are not tracked.
+ *
+ * @param <T> The type of thing being tracked.
+ */
+class CellIndex<T> {
+	private final int width;
+	private final int height;
+
+	// One list per tile, created when something first lands there
+	private final List<T>[] cells;
+
+	/**
+	 * Creates an empty index for a zone of the given size.
+	 *
+	 * @param width The width of the zone in tiles.
+	 * @param height The height of the zone in tiles.
+	 */
+	CellIndex(int width, int height){
+		this.width = width;
+		this.height = height;
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		List<T>[] empty = new List[width * height];
+		this.cells = empty;
+	}
+
+	/**
+	 * @return The index of the cell for the given point, or -1 if it is outside the zone.
+	 */
+	private int cell(Point point){
+		if(point == null) return -1;
+		return cell(point.x, point.y);
+	}
+
+	private int cell(int x, int y){
+		if(x < 0 || y < 0 || x >= width || y >= height)
+			return -1;
+		return y * width + x;
+	}
+
+	/**
+	 * Records that a thing is at a point.
+	 */
+	void add(T thing, Point point){
+		add(thing, cell(point));
+	}
+
+	private void add(T thing, int cell){
+		if(cell < 0) return;
+
+		List<T> things = cells[cell];
+		if(things == null){
+			things = new ArrayList<T>(2);
+			cells[cell] = things;
+		}
+		things.add(thing);
+	}
+
+	/**
+	 * Forgets that a thing is at a point.
+	 *
+	 * @return Whether or not the thing was recorded at that point.
+	 */
+	boolean remove(T thing, Point point){
+		return remove(thing, cell(point));
+	}
+
+	private boolean remove(T thing, int cell){
+		if(cell < 0) return false;
+
+		List<T> things = cells[cell];
+		if(things == null) return false;
+		for(int i = 0; i < things.size(); i++){
+			// Compare by identity; distinct things may be equal
+			if(things.get(i) == thing){
+				things.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Moves a thing from one point to another. Does nothing
+	 * if the thing wasn't recorded at the old point, so things
+	 * which aren't in the zone stay out of the index.
+	 */
+	void move(T thing, Point from, Point to){
+		if(remove(thing, from))
+			add(thing, to);
+	}
+
+	/**
+	 * Moves a thing from one tile to another, as move(T, Point, Point).
+	 */
+	void move(T thing, int fromX, int fromY, int toX, int toY){
+		if(remove(thing, cell(fromX, fromY)))
+			add(thing, cell(toX, toY));
+	}
+
+	/**
+	 * @return Everything at the given point. The list mustn't be modified.
+	 */
+	List<T> at(Point point){
+		if(point == null) return Collections.emptyList();
+		return at(point.x, point.y);
+	}
+
+	/**
+	 * @return Everything at the given tile. The list mustn't be modified.
+	 */
+	List<T> at(int x, int y){
+		int cell = cell(x, y);
+		if(cell < 0) return Collections.emptyList();
+
+		List<T> things = cells[cell];
+		return things == null ? Collections.<T>emptyList() : things;
+	}
+
+	/**
+	 * @return Something at the given point, or null if nothing is there.
+	 */
+	T first(Point point){
+		List<T> things = at(point);
+		return things.isEmpty() ? null : things.get(0);
+	}
+}
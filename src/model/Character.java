@@ -24,7 +24,12 @@ import util.Direction;
  */
 public abstract class Character implements Serializable, Storable, Drawable {
 	private static final long serialVersionUID = -8377078297825212109L;
-	private Coord coord;
+	/* position and facing, kept apart so that moving doesn't create anything */
+	private int x;
+	private int y;
+	private Direction facing;
+	/* this character's position as a Coord, made when first asked for after moving */
+	private transient Coord coord;
 	private Zone zone;
 
 	/* ID to be used by next constructed character */
@@ -33,6 +38,15 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	/* runtime-unique id of this character */
 	private long id;
 	
+	/* this character's slot in its zone's CharacterStore */
+	private transient int slot = -1;
+	
+	/* the tick this character last asked its zone to tick it on */
+	private transient long wakeTick;
+	
+	/* whether this character's zone has it counted as busy */
+	private transient boolean countedBusy;
+	
 	/**
 	 * Creates a new character with the given parameters.
 	 *
@@ -41,7 +55,7 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	 */
 	public Character(Zone zone, Coord coord) {
 		this.zone = zone;
-		this.coord = coord;
+		place(coord);
 		this.id = nextID++;
 	}
 
@@ -52,7 +66,7 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	 * @param zones The list of all zones to find the one that this character belongs to from.
 	 */
 	protected Character(Element elem, Zone[] zones) {
-		this.coord = Coord.fromString(elem.getAttribute("coord"));
+		place(Coord.fromString(elem.getAttribute("coord")));
 		long zoneID = Long.parseLong(elem.getAttribute("zoneID"));
 		for (int i = 0; i < zones.length ; i++) {
 			if (zones[i].getID() == zoneID){
@@ -99,19 +113,17 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	 * @return Whether or not the character moved.
 	 */
 	public boolean moveIn(Direction dir, int amount){
-		Point originalPoint = getCoord().getPoint();
-		Point newPoint = Direction.move(originalPoint, dir, amount);
-		
-		Point nextPoint = originalPoint;
-		while(!(nextPoint.equals(newPoint))){
-			nextPoint = Direction.move(nextPoint, dir, 1);
-			if(zone.checkForObstruction(nextPoint)){
-				System.out.println("obs");
+		int newX = x;
+		int newY = y;
+		for(int i = 0; i < amount; i++){
+			newX += dir.dx();
+			newY += dir.dy();
+			if(zone.isBlocked(newX, newY)){
 				return false;
 			}
 		}
-			
-		setCoord(new Coord(getCoord().getFacing(), newPoint));
+		
+		moveTo(newX, newY, facing);
 		return true;
 	}
 	
@@ -121,23 +133,7 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	 * @param isClockwise Boolean representing the direction of rotation, True for clockwise
 	 */
 	public void rotate(boolean isClockwise){
-		int dirValue = getCoord().getFacing().getDirection();
-		
-		/* make the change; clockwise increases, anticlockwise decreases */
-		dirValue += isClockwise ? 1 : -1;
-		
-		/* wrap around from 3 to 0 */
-		if(dirValue > 3) {
-			dirValue = 0;
-		}
-		/* wrap around from 0 to 3 */
-		if(dirValue < 0) {
-			dirValue = 3;
-		}
-		Direction newDirection = new Direction(dirValue);
-		Point point = getCoord().getPoint();
-		Coord newCoord = new Coord(newDirection, point);
-		setCoord(newCoord);
+		moveTo(x, y, facing.rotate(isClockwise));
 	}
 
 	/**
@@ -145,14 +141,84 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	 * @return Coord representing position
 	 */
 	public Coord getCoord() {
+		if(coord == null)
+			coord = new Coord(facing, new Point(x, y));
 		return coord;
 	}
 
+	/**
+	 * @return The x coordinate of the character's position.
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * @return The y coordinate of the character's position.
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * @return The direction the character is facing.
+	 */
+	public Direction getFacing() {
+		return facing;
+	}
+
 	/**
 	 * Set the position of the character, forgetting old position
 	 * @param coord -- new coordinate 
 	 */
 	public void setCoord(Coord coord) {
+		int fromX = x;
+		int fromY = y;
+		place(coord);
+		if(zone != null)
+			zone.characterMoved(this, fromX, fromY);
+	}
+	
+	/**
+	 * Turns the character to face the given direction.
+	 * @param facing -- new direction to face
+	 */
+	public void face(Direction facing) {
+		this.facing = facing;
+		this.coord = null;
+		if(zone != null)
+			zone.characterChanged(this);
+	}
+	
+	/**
+	 * Moves the character to the given position without
+	 * any of the side effects of setCoord; used to mirror
+	 * state which has already been resolved elsewhere.
+	 * @param x -- new x coordinate
+	 * @param y -- new y coordinate
+	 * @param facing -- new direction to face
+	 */
+	void teleportTo(int x, int y, Direction facing) {
+		moveTo(x, y, facing);
+	}
+	
+	/* moves without making a Coord; the zone is told where from */
+	private void moveTo(int x, int y, Direction facing) {
+		int fromX = this.x;
+		int fromY = this.y;
+		this.x = x;
+		this.y = y;
+		this.facing = facing;
+		this.coord = null;
+		if(zone != null)
+			zone.characterMoved(this, fromX, fromY);
+	}
+	
+	/* takes position and facing from a coord, keeping it as it can't change */
+	private void place(Coord coord) {
+		this.x = coord.getPoint().x;
+		this.y = coord.getPoint().y;
+		this.facing = coord.getFacing();
 		this.coord = coord;
 	}
 
@@ -180,6 +246,42 @@ public abstract class Character implements Serializable, Storable, Drawable {
 		return this.id;
 	}
 	
+	int getSlot() {
+		return slot;
+	}
+	
+	void setSlot(int slot) {
+		this.slot = slot;
+	}
+	
+	long getWakeTick() {
+		return wakeTick;
+	}
+	
+	void setWakeTick(long wakeTick) {
+		this.wakeTick = wakeTick;
+	}
+	
+	boolean isCountedBusy() {
+		return countedBusy;
+	}
+	
+	void setCountedBusy(boolean countedBusy) {
+		this.countedBusy = countedBusy;
+	}
+	
+	/**
+	 * Asks this character's zone to tick it after the given number
+	 * of ticks. Zones only tick characters which have asked to be,
+	 * so a character with something to do over several ticks must
+	 * ask again each time it is ticked.
+	 * @param ticks -- how many ticks from now to be ticked in
+	 */
+	protected void wakeAfter(int ticks) {
+		if(zone != null)
+			zone.wake(this, ticks);
+	}
+	
 	@Override
 	public boolean equals(Object o){
 		if(o instanceof Character){
@@ -194,14 +296,14 @@ public abstract class Character implements Serializable, Storable, Drawable {
 
 	public Element toXMLElement(Document doc) {
 		Element elem = doc.createElement("character");
-		elem.setAttribute("coord", coord.toString());
+		elem.setAttribute("coord", getCoord().toString());
 		elem.setAttribute("zoneID", zone.getID() + "");
 		return elem;
 	}
 	
 	@Override
 	public PointD getDrawPosition() {
-		return new PointD(coord.getPoint().getX(), coord.getPoint().getY());
+		return new PointD(x, y);
 	}
 	
 	@Override
@@ -216,15 +318,36 @@ public abstract class Character implements Serializable, Storable, Drawable {
 	
 	/**
 	 * Ticks any current processes this character
-	 * is undertaking. Default implementation does nothing.
+	 * is undertaking. Only called on ticks the character
+	 * has asked for with wakeAfter, or if its zone is
+	 * ticked directly. Default implementation does nothing.
 	 */
 	public void tick(){
 		// Do nothing
 	}
 
+	/**
+	 * @return Whether or not this character is part way through something that needs ticking.
+	 */
+	public boolean isBusy(){
+		return false;
+	}
+
+	/**
+	 * Called when this character's zone wakes up, with the number
+	 * of ticks the zone slept through, so that anything which
+	 * changes on its own over time can catch up in one step.
+	 * Default implementation does nothing.
+	 *
+	 * @param ticks The number of ticks missed.
+	 */
+	public void catchUp(long ticks){
+		// Do nothing
+	}
+
 	public Element toXMLElement(Document doc, String type) {
 		Element elem = doc.createElement(type);
-		elem.setAttribute("coord", coord.toString());
+		elem.setAttribute("coord", getCoord().toString());
 		elem.setAttribute("zoneID", zone.getID() + "");
 		return elem;
 	}
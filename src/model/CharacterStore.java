@@ -0,0 +1,151 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * The state of the characters in a zone which its tick looks at most,
+ * kept in parallel arrays with one slot per character: position,
+ * facing, health and what enemies are doing. Going through every
+ * character this way reads a few packed arrays instead of following
+ * each character's Coord to its Point and Direction.
+ *
+ * Slots are dense: removing a character moves the one in the last
+ * slot into its place. The zone keeps the store in step with its
+ * characters whenever they are added, removed, move or change.
+ */
+class CharacterStore {
+	static final byte OTHER = 0;
+	static final byte PLAYER = 1;
+	static final byte ENEMY = 2;
+
+	private static final byte NO_BEHAVIOUR = -1;
+	// values() copies the array every time it's called
+	private static final Enemy.Behaviour[] BEHAVIOURS = Enemy.Behaviour.values();
+
+	private int size;
+	private Character[] characters;
+	private int[] x;
+	private int[] y;
+	private byte[] facing;
+	private byte[] kind;
+	private int[] health;
+	private byte[] behaviour;
+
+	CharacterStore(int capacity){
+		capacity = Math.max(capacity, 8);
+		characters = new Character[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		facing = new byte[capacity];
+		kind = new byte[capacity];
+		health = new int[capacity];
+		behaviour = new byte[capacity];
+	}
+
+	/**
+	 * Gives a character a slot, and fills it in.
+	 */
+	void add(Character c){
+		if(size == characters.length){
+			int capacity = size * 2;
+			characters = Arrays.copyOf(characters, capacity);
+			x = Arrays.copyOf(x, capacity);
+			y = Arrays.copyOf(y, capacity);
+			facing = Arrays.copyOf(facing, capacity);
+			kind = Arrays.copyOf(kind, capacity);
+			health = Arrays.copyOf(health, capacity);
+			behaviour = Arrays.copyOf(behaviour, capacity);
+		}
+		int slot = size++;
+		characters[slot] = c;
+		c.setSlot(slot);
+		kind[slot] = c instanceof Player ? PLAYER : c instanceof Enemy ? ENEMY : OTHER;
+		update(c);
+	}
+
+	/**
+	 * Frees a character's slot, moving the last character into it.
+	 */
+	void remove(Character c){
+		int slot = c.getSlot();
+		if(slot < 0 || slot >= size || characters[slot] != c)
+			return;
+
+		int last = --size;
+		if(slot != last){
+			characters[slot] = characters[last];
+			x[slot] = x[last];
+			y[slot] = y[last];
+			facing[slot] = facing[last];
+			kind[slot] = kind[last];
+			health[slot] = health[last];
+			behaviour[slot] = behaviour[last];
+			characters[slot].setSlot(slot);
+		}
+		characters[last] = null;
+		c.setSlot(-1);
+	}
+
+	/**
+	 * Copies a character's current state into its slot.
+	 */
+	void update(Character c){
+		int slot = c.getSlot();
+		if(slot < 0 || slot >= size || characters[slot] != c)
+			return;
+
+		x[slot] = c.getX();
+		y[slot] = c.getY();
+		facing[slot] = (byte)c.getFacing().getDirection();
+		if(c instanceof Enemy){
+			Enemy e = (Enemy)c;
+			health[slot] = e.getRemainingHealth();
+			behaviour[slot] = (byte)e.getBehaviour().ordinal();
+		}
+		else{
+			health[slot] = 0;
+			behaviour[slot] = NO_BEHAVIOUR;
+		}
+	}
+
+	int size(){
+		return size;
+	}
+
+	Character character(int slot){
+		return characters[slot];
+	}
+
+	int x(int slot){
+		return x[slot];
+	}
+
+	int y(int slot){
+		return y[slot];
+	}
+
+	int facing(int slot){
+		return facing[slot];
+	}
+
+	/**
+	 * @return PLAYER, ENEMY or OTHER.
+	 */
+	byte kind(int slot){
+		return kind[slot];
+	}
+
+	/**
+	 * @return The remaining health of the enemy in a slot, or 0 if it isn't an enemy.
+	 */
+	int health(int slot){
+		return health[slot];
+	}
+
+	/**
+	 * @return What the enemy in a slot is doing.
+	 */
+	Enemy.Behaviour behaviour(int slot){
+		return behaviour[slot] == NO_BEHAVIOUR ? null : BEHAVIOURS[behaviour[slot]];
+	}
+}
@@ -1,6 +1,8 @@
 package model;
 
+import java.awt.Point;
 import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -8,6 +10,7 @@ import org.w3c.dom.Node;
 
 import datastorage.StorableFactory;
 import util.Coord;
+import util.Direction;
 
 /**
  * An Enemy is a special type of Character
@@ -18,8 +21,23 @@ import util.Coord;
  */
 public abstract class Enemy extends Character implements Serializable {
 	private static final long serialVersionUID = 4466958619144779648L;
+	// How many steps away an enemy can notice a player from
+	private static final int SIGHT = 10;
+
 	private int health;
 	private int maxHealth;
+
+	/**
+	 * What an enemy is doing. Idle enemies stand still, wandering
+	 * ones amble about, chasing ones head for a player, and attacking
+	 * ones are next to a player and attack them every tick.
+	 */
+	public enum Behaviour {
+		IDLE, WANDER, CHASE, ATTACK
+	}
+
+	private transient Behaviour behaviour;
+	private transient Player target;
 	
 	public Enemy(Zone zone, Coord coord, int maxHealth){
 		super(zone, coord);
@@ -43,8 +61,143 @@ public abstract class Enemy extends Character implements Serializable {
 		return health <= 0;
 	}
 	
+	public Behaviour getBehaviour(){
+		return behaviour == null ? Behaviour.IDLE : behaviour;
+	}
+	
+	/**
+	 * @return The player this enemy is chasing or attacking, or null if it isn't.
+	 */
+	public Player getTarget(){
+		return target;
+	}
+	
+	/**
+	 * Decides what this enemy should be doing: going after the
+	 * nearest player it can see, or otherwise idling or wandering.
+	 * This is the expensive part of an enemy's thinking, so the
+	 * zone only has a few enemies decide each tick.
+	 *
+	 * @param store The state of the characters in this enemy's zone.
+	 * @param slot This enemy's slot in the store.
+	 * @param players The slots of the players in the store.
+	 * @param playerCount How many of those slots there are.
+	 */
+	void decide(CharacterStore store, int slot, int[] players, int playerCount){
+		if(store.health(slot) <= 0) return;
+		
+		int x = store.x(slot);
+		int y = store.y(slot);
+		Player nearest = null;
+		int nearestDistance = 0;
+		for(int i = 0; i < playerCount; i++){
+			int p = players[i];
+			// Rule out far away players before working out the real distance
+			if(Math.abs(store.x(p) - x) + Math.abs(store.y(p) - y) > SIGHT)
+				continue;
+			int distance = getZone().getDistanceTo(new Point(x, y), new Point(store.x(p), store.y(p)));
+			if(distance > 0 && distance <= SIGHT && (nearest == null || distance < nearestDistance)){
+				nearest = (Player)store.character(p);
+				nearestDistance = distance;
+			}
+		}
+		
+		target = nearest;
+		if(nearest != null)
+			setBehaviour(nearestDistance == 1 ? Behaviour.ATTACK : Behaviour.CHASE);
+		else
+			setBehaviour(ThreadLocalRandom.current().nextInt(3) == 0 ? Behaviour.WANDER : Behaviour.IDLE);
+	}
+	
+	/**
+	 * Carries out what this enemy has decided to do, for one tick.
+	 */
+	@Override
+	public void tick(){
+		if(isDead()) return;
+		
+		if(target != null && target.getZone() != getZone()){
+			target = null;
+			setBehaviour(Behaviour.IDLE);
+		}
+		
+		Point at = getCoord().getPoint();
+		switch(getBehaviour()){
+		case IDLE:
+			break;
+		case WANDER:
+			if(ThreadLocalRandom.current().nextInt(3) == 0)
+				step(Direction.of(ThreadLocalRandom.current().nextInt(4)));
+			break;
+		case CHASE:
+			if(isNextTo(at, target.getCoord().getPoint())){
+				setBehaviour(Behaviour.ATTACK);
+				break;
+			}
+			Direction dir = getZone().getStepToward(at, target.getCoord().getPoint());
+			if(dir != null)
+				step(dir);
+			break;
+		case ATTACK:
+			Point there = target.getCoord().getPoint();
+			if(!isNextTo(at, there)){
+				setBehaviour(Behaviour.CHASE);
+				break;
+			}
+			Direction facing = Direction.directionFrom(at, there);
+			if(facing != getFacing())
+				face(facing);
+			attack(target);
+			break;
+		}
+		
+		// Idle enemies have nothing to do until they next decide otherwise
+		if(getBehaviour() != Behaviour.IDLE)
+			wakeAfter(1);
+	}
+	
+	private void setBehaviour(Behaviour behaviour){
+		this.behaviour = behaviour;
+		if(getZone() != null)
+			getZone().characterUpdated(this);
+		if(behaviour != Behaviour.IDLE)
+			wakeAfter(1);
+	}
+	
+	private static boolean isNextTo(Point a, Point b){
+		return Math.abs(a.x - b.x) + Math.abs(a.y - b.y) == 1;
+	}
+	
+	private void step(Direction dir){
+		face(dir);
+		moveIn(dir);
+	}
+	
+	/**
+	 * Attacks a player next to this enemy; called every tick the
+	 * enemy is attacking. Players can't be hurt, so by default
+	 * this does nothing.
+	 *
+	 * @param player The player being attacked.
+	 */
+	protected void attack(Player player){
+		// Do nothing
+	}
+	
+	/**
+	 * Sets the remaining health of this enemy directly,
+	 * for mirroring an enemy's state from a snapshot.
+	 */
+	void setRemainingHealth(int health){
+		this.health = health;
+		if(getZone() != null)
+			getZone().characterChanged(this);
+	}
+	
 	public void damage(int amount){
 		health -= amount;
+		if(getZone() != null)
+			getZone().characterChanged(this);
 		System.out.println("remaininghealth: " + health);
 	}
 	
@@ -0,0 +1,139 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Decides what the enemies in a zone are doing. Enemies act every
+ * tick, which is cheap, but deciding what to do means looking for
+ * players, which isn't; so each tick only as many enemies decide
+ * as fit in a time budget, taking turns so that every enemy gets
+ * to decide within a few ticks however many there are.
+ *
+ * Also keeps track of how long the zone's ticks take.
+ */
+public class EnemyAI {
+	/**
+	 * How long enemies in a zone may spend deciding what to do
+	 * each tick, by default.
+	 */
+	public static final long DEFAULT_BUDGET_NANOS = 2000000;
+
+	private long budgetNanos = DEFAULT_BUDGET_NANOS;
+
+	// The slot of the next enemy to decide
+	private int cursor;
+	// The slots of the players in the zone this tick
+	private int[] players = new int[2];
+
+	private long tickStart;
+	private long ticks;
+	private long lastTickNanos;
+	private long maxTickNanos;
+	private int lastDecisions;
+	private int lastDeferred;
+
+	/**
+	 * Lets as many enemies as fit in the budget decide what to do,
+	 * starting from the one after the last to decide last tick.
+	 * Called at the start of a zone's tick.
+	 *
+	 * @param store The state of the characters in the zone.
+	 */
+	void think(CharacterStore store){
+		tickStart = System.nanoTime();
+
+		int size = store.size();
+		int playerCount = 0;
+		int enemies = 0;
+		for(int slot = 0; slot < size; slot++){
+			byte kind = store.kind(slot);
+			if(kind == CharacterStore.PLAYER){
+				if(playerCount == players.length)
+					players = Arrays.copyOf(players, playerCount * 2);
+				players[playerCount++] = slot;
+			}
+			else if(kind == CharacterStore.ENEMY){
+				enemies++;
+			}
+		}
+
+		int decisions = 0;
+		if(cursor >= size)
+			cursor = 0;
+		for(int i = 0; i < size && decisions < enemies; i++){
+			// At least one enemy decides each tick, however small the budget
+			if(decisions > 0 && System.nanoTime() - tickStart > budgetNanos)
+				break;
+
+			int slot = cursor;
+			cursor = (cursor + 1) % size;
+			if(store.kind(slot) == CharacterStore.ENEMY){
+				((Enemy)store.character(slot)).decide(store, slot, players, playerCount);
+				decisions++;
+			}
+		}
+		lastDecisions = decisions;
+		lastDeferred = enemies - decisions;
+	}
+
+	/**
+	 * Records how long the zone's tick took. Called at the end of it.
+	 */
+	void tickDone(){
+		lastTickNanos = System.nanoTime() - tickStart;
+		maxTickNanos = Math.max(maxTickNanos, lastTickNanos);
+		ticks++;
+	}
+
+	/**
+	 * @return How long enemies may spend deciding what to do each tick, in nanoseconds.
+	 */
+	public long getBudgetNanos(){
+		return budgetNanos;
+	}
+
+	/**
+	 * Sets how long enemies may spend deciding what to do each tick.
+	 * One enemy always gets to decide, even if the budget is zero.
+	 *
+	 * @param budgetNanos The budget, in nanoseconds.
+	 */
+	public void setBudgetNanos(long budgetNanos){
+		this.budgetNanos = budgetNanos;
+	}
+
+	/**
+	 * @return The number of times the zone has ticked.
+	 */
+	public long getTicks(){
+		return ticks;
+	}
+
+	/**
+	 * @return How long the zone's last tick took, in nanoseconds.
+	 */
+	public long getLastTickNanos(){
+		return lastTickNanos;
+	}
+
+	/**
+	 * @return How long the zone's longest tick took, in nanoseconds.
+	 */
+	public long getMaxTickNanos(){
+		return maxTickNanos;
+	}
+
+	/**
+	 * @return How many enemies decided what to do in the last tick.
+	 */
+	public int getLastDecisions(){
+		return lastDecisions;
+	}
+
+	/**
+	 * @return How many enemies had to wait for a later tick to decide what to do.
+	 */
+	public int getLastDeferred(){
+		return lastDeferred;
+	}
+}
@@ -1,5 +1,6 @@
 package model;
 
+import java.awt.Point;
 import java.io.Serializable;
 
 import org.w3c.dom.*;
@@ -39,6 +40,7 @@ public abstract class Entity extends Interactable implements Serializable, Drawa
 	}
 
 	protected Entity(Element elem, Zone[] zones){
+		this.id = nextID++;
 		this.worldPosition = Coord.fromString(elem.getAttribute("coord"));
 		long zoneID = Long.parseLong(elem.getAttribute("zoneID"));
 		this.drawImagePath = elem.getAttribute("draw");
@@ -85,7 +87,10 @@ public abstract class Entity extends Interactable implements Serializable, Drawa
 	 * @param coord The position to teleport this entity to.
 	 */
 	public void teleportTo(Coord coord){
+		Point from = this.worldPosition.getPoint();
 		this.worldPosition = coord;
+		if(zone != null)
+			zone.entityMoved(this, from);
 	}
 
 	public Coord getWorldPosition() {
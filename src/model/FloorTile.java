@@ -23,7 +23,12 @@ public class FloorTile extends Tile {
 	
 	@Override
 	public boolean collides(){
-		return false;
+		return getType().collides();
+	}
+
+	@Override
+	public TileType getType(){
+		return TileType.FLOOR;
 	}
 	
 	@Override
@@ -51,7 +56,7 @@ public class FloorTile extends Tile {
 
 	@Override
 	public String getDrawImagePath(DrawDirection d) {
-		return "images/floorTile.png";
+		return getType().getDrawImagePath();
 	}
 
 	@Override
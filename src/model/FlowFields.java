@@ -0,0 +1,157 @@
+package model;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+import util.Direction;
+
+/**
+ * Distances across a zone to the tiles characters are heading for.
+ * Each field is found with one breadth-first search out from its
+ * target, after which any number of characters can find their next
+ * step towards the target by looking at the tiles around them, so
+ * many characters chasing the same target cost no more than one.
+ *
+ * Fields only take tiles and entities into account, so they stay
+ * valid as characters move about; characters in the way are stepped
+ * around when choosing a step. A field is searched again the next
+ * time it is used after the zone's terrain has changed. Only the
+ * most recently used few fields are kept.
+ */
+class FlowFields {
+	private static final int MAX_FIELDS = 4;
+
+	// Distance of a tile that can't reach the target
+	static final int UNREACHABLE = -1;
+
+	private final Zone zone;
+	private final Field[] fields = new Field[MAX_FIELDS];
+	private long uses;
+	// Shared breadth-first search queue
+	private int[] queue = new int[0];
+
+	FlowFields(Zone zone){
+		this.zone = zone;
+	}
+
+	private static class Field {
+		int target = -1;
+		long terrainVersion;
+		long lastUsed;
+		int[] distance;
+	}
+
+	/**
+	 * @return How many steps it takes to get from a point to a target, ignoring characters, or UNREACHABLE.
+	 */
+	int distance(Point from, Point target){
+		int width = zone.getWidth();
+		if(!inside(from) || !inside(target))
+			return UNREACHABLE;
+		return field(target).distance[from.y*width + from.x];
+	}
+
+	/**
+	 * Picks which way to move to get one step closer to a target.
+	 *
+	 * @return The direction to move in, or null if the target is reached, unreachable, or every step closer is obstructed.
+	 */
+	Direction step(Point from, Point target){
+		int width = zone.getWidth();
+		if(!inside(from) || !inside(target) || from.equals(target))
+			return null;
+		int[] distance = field(target).distance;
+		int here = distance[from.y*width + from.x];
+		if(here == UNREACHABLE)
+			return null;
+
+		// Any neighbour one step closer will do, if nobody is standing on it
+		int closer = here - 1;
+		if(isCloser(distance, from.x + 1, from.y, closer)) return Direction.of(Direction.EAST);
+		if(isCloser(distance, from.x - 1, from.y, closer)) return Direction.of(Direction.WEST);
+		if(isCloser(distance, from.x, from.y + 1, closer)) return Direction.of(Direction.SOUTH);
+		if(isCloser(distance, from.x, from.y - 1, closer)) return Direction.of(Direction.NORTH);
+		return null;
+	}
+
+	private boolean isCloser(int[] distance, int x, int y, int closer){
+		if(zone.isBlocked(x, y))
+			return false; // also covers points outside the zone
+		return distance[y*zone.getWidth() + x] == closer;
+	}
+
+	private boolean inside(Point p){
+		return p.x >= 0 && p.y >= 0 && p.x < zone.getWidth() && p.y < zone.getHeight();
+	}
+
+	/**
+	 * @return An up to date field for the given target.
+	 */
+	private Field field(Point target){
+		int tile = target.y*zone.getWidth() + target.x;
+		long terrainVersion = zone.getTerrainVersion();
+		uses++;
+
+		Field oldest = null;
+		for(int i = 0; i < fields.length; i++){
+			Field f = fields[i];
+			if(f == null){
+				f = new Field();
+				fields[i] = f;
+			}
+			if(f.target == tile){
+				if(f.terrainVersion != terrainVersion)
+					search(f, tile, terrainVersion);
+				f.lastUsed = uses;
+				return f;
+			}
+			if(oldest == null || f.lastUsed < oldest.lastUsed)
+				oldest = f;
+		}
+
+		// Reuse the least recently used field for the new target
+		search(oldest, tile, terrainVersion);
+		oldest.lastUsed = uses;
+		return oldest;
+	}
+
+	/**
+	 * Fills in a field with a breadth-first search out from its target.
+	 */
+	private void search(Field f, int target, long terrainVersion){
+		int width = zone.getWidth();
+		int height = zone.getHeight();
+		int tiles = width * height;
+		if(f.distance == null || f.distance.length != tiles)
+			f.distance = new int[tiles];
+		if(queue.length != tiles)
+			queue = new int[tiles];
+		int[] distance = f.distance;
+		Arrays.fill(distance, UNREACHABLE);
+
+		int head = 0, tail = 0;
+		distance[target] = 0;
+		queue[tail++] = target;
+		while(head < tail){
+			int tile = queue[head++];
+			int x = tile % width;
+			int y = tile / width;
+			int next = distance[tile] + 1;
+			if(x + 1 < width) tail = reach(distance, tile + 1, x + 1, y, next, tail);
+			if(x > 0) tail = reach(distance, tile - 1, x - 1, y, next, tail);
+			if(y + 1 < height) tail = reach(distance, tile + width, x, y + 1, next, tail);
+			if(y > 0) tail = reach(distance, tile - width, x, y - 1, next, tail);
+		}
+
+		f.target = target;
+		f.terrainVersion = terrainVersion;
+	}
+
+	private int reach(int[] distance, int tile, int x, int y, int dist, int tail){
+		if(distance[tile] != UNREACHABLE || zone.isSolid(x, y))
+			return tail;
+		distance[tile] = dist;
+		queue[tail] = tile;
+		return tail + 1;
+	}
+}
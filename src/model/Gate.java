@@ -79,6 +79,8 @@ public abstract class Gate extends Entity implements Storable, Serializable {
 		if(this.state != initial)
 			return false;
 		this.state = result;
+		if(getZone() != null)
+			getZone().entityChanged(this);
 		return true;
 	}
 
@@ -164,6 +166,17 @@ public abstract class Gate extends Entity implements Storable, Serializable {
     	return state;
     }
     
+    /**
+     * Forces this gate into the given state, bypassing the
+     * usual transitions. Only used to mirror a gate's state
+     * from a snapshot.
+     */
+    void setState(State state){
+    	this.state = state;
+    	if(getZone() != null)
+    		getZone().entityChanged(this);
+    }
+    
     @Override
 	public Element toXMLElement(Document doc, String type){
 		Element elem = super.toXMLElement(doc, type);
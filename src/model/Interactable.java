@@ -12,7 +12,9 @@ import datastorage.Storable;
  * Defines something which has certain interactions that
  * can be performed on it. Each interaction has some
  * text that describes it (which may be displayed to a
- * user). 
+ * user), and an ID which is unique among the interactions
+ * of its interactable, so that clients can ask for an
+ * interaction to be performed without sending it.
  * 
  * @author Robert Campbell
  *
@@ -20,18 +22,43 @@ import datastorage.Storable;
 public abstract class Interactable implements Serializable, Storable {
 	private static final long serialVersionUID = 4932231803603496537L;
 	private ArrayList<Interaction> interactions = new ArrayList<Interaction>();
+	// The ID to give the next interaction added; IDs aren't reused
+	private int nextInteractionID;
+	
+	/**
+	 * @return The game-wide unique ID of this interactable.
+	 */
+	public abstract long getID();
 	
 	/**
 	 * Adds an interaction that may be performed on this
-	 * interactable. This in no way guarantees that the interaction
+	 * interactable, giving it the next interaction ID.
+	 * This in no way guarantees that the interaction
 	 * may be executed during gameplay, as this is handled externally.
 	 * 
 	 * @param i The interaction to add to this interactable.
 	 */
 	public void addInteraction(Interaction i){
+		i.setID(nextInteractionID++);
 		interactions.add(i);
 	}
 	
+	/**
+	 * Finds one of this interactable's interactions by its ID.
+	 * Interactables only have a few interactions, so they are
+	 * simply looked through.
+	 * 
+	 * @param id The ID of the interaction.
+	 * @return The interaction with that ID, or null if this interactable doesn't have it.
+	 */
+	public Interaction getInteraction(int id){
+		for(int i = 0; i < interactions.size(); i++){
+			if(interactions.get(i).getID() == id)
+				return interactions.get(i);
+		}
+		return null;
+	}
+	
 	/**
 	 * Removes a given interaction from this interactable.
 	 * The interaction may therefore no longer be performed
@@ -19,6 +19,8 @@ import datastorage.Storable;
 public abstract class Interaction implements Storable, Serializable {
 	private static final long serialVersionUID = -8279745242900716669L;
 	private Entity entity;
+	// Given by the interactable this interaction was added to
+	private int id = -1;
 
 	/**
 	 * Returns the target entity of this interaction
@@ -38,6 +40,20 @@ public abstract class Interaction implements Storable, Serializable {
 		this.entity = entity;
 	}
 	
+	/**
+	 * Returns the ID of this interaction, which is unique among
+	 * the interactions of the interactable it was added to.
+	 * 
+	 * @return The ID, or -1 if this interaction hasn't been added to an interactable.
+	 */
+	public int getID() {
+		return this.id;
+	}
+	
+	void setID(int id) {
+		this.id = id;
+	}
+	
 	/**
 	 * Returns the human-readable text of this interaction.
 	 * Note that this does not necessarily return the same
@@ -2,8 +2,10 @@ package model;
 
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 import org.w3c.dom.*;
 
@@ -14,6 +16,11 @@ import datastorage.*;
  * amount of items. Items can usually be taken out
  * of or put into an inventory.
  *
+ * Keeps track of which slot each item is in and which slots
+ * hold each type of item, along with how many of each type
+ * there are counting stacks, so that finding, counting and
+ * spending items doesn't mean looking through every slot.
+ *
  * @author Robert Campbell
  */
 public class Inventory implements Storable, Serializable {
@@ -22,6 +29,25 @@ public class Inventory implements Storable, Serializable {
 	private Item[] items;
 	private int storageCapacity;
 
+	// The character holding this inventory, whose zone is told when
+	// its contents change, or null if nobody is holding it
+	private Character owner;
+
+	// Which slots are full, the slot of each item, and the slots
+	// and quantity of each type; rebuilt from items when missing
+	private transient BitSet occupied;
+	private transient Map<Item, Integer> slots;
+	private transient Map<Class<? extends Item>, TypeSlots> types;
+
+	/**
+	 * The slots holding one type of item, and how many of
+	 * that type of item they hold altogether.
+	 */
+	private static class TypeSlots {
+		final BitSet slots = new BitSet();
+		int quantity;
+	}
+
 	/**
 	 * Builds a new empty inventory with the given
 	 * storage capacity.
@@ -71,8 +97,11 @@ public class Inventory implements Storable, Serializable {
 			throw new IllegalArgumentException("Attempting to add an item at an index out of bounds: " + index);
 
 		if(items[index] == null){
+			index();
 			items[index] = item;
 			currentNumItems++;
+			changed();
+			record(index);
 			return true;
 		}
 
@@ -89,13 +118,11 @@ public class Inventory implements Storable, Serializable {
 	 * @return Whether or not the item was found and therefore removed.
 	 */
 	public boolean removeItem(Item item){
-		for(int i = 0; i < items.length; i++){
-			if(items[i] == item){
-				removeAtIndex(i);
-				return true;
-			}
-		}
-		return false;
+		int index = indexOf(item);
+		if(index < 0)
+			return false;
+		removeAtIndex(index);
+		return true;
 	}
 
 	/**
@@ -106,11 +133,7 @@ public class Inventory implements Storable, Serializable {
 	 * @return Whether or not this inventory contains that item.
 	 */
 	public boolean containsItem(Item item){
-		for(int i = 0; i < items.length; i++){
-			if(items[i] == item)
-				return true;
-		}
-		return false;
+		return indexOf(item) >= 0;
 	}
 
 	/**
@@ -121,12 +144,13 @@ public class Inventory implements Storable, Serializable {
 	 * @return How many items were removed.
 	 */
 	public int removeAllOfType(Class<? extends Item> type){
+		TypeSlots t = index().get(type);
+		if(t == null) return 0;
+
 		int found = 0;
-		for(int i = 0; i< items.length; i++){
-			if(items[i].getClass().equals(type)){
-				removeAtIndex(i);
-				found++;
-			}
+		for(int i = t.slots.nextSetBit(0); i >= 0; i = t.slots.nextSetBit(i + 1)){
+			removeAtIndex(i);
+			found++;
 		}
 		return found;
 	}
@@ -138,13 +162,61 @@ public class Inventory implements Storable, Serializable {
 	 * @return An array of indices of items of the given class.
 	 */
 	public Integer[] getAllOfType(Class<? extends Item> type){
-		List<Integer> elements = new LinkedList<Integer>();
-		for(int i = 0; i< items.length; i++){
-			if(items[i] != null && items[i].getClass().equals(type)){
-				elements.add(i);
+		TypeSlots t = index().get(type);
+		if(t == null) return new Integer[0];
+
+		Integer[] elements = new Integer[t.slots.cardinality()];
+		int n = 0;
+		for(int i = t.slots.nextSetBit(0); i >= 0; i = t.slots.nextSetBit(i + 1)){
+			elements[n++] = i;
+		}
+		return elements;
+	}
+
+	/**
+	 * Returns how many items of the given class are in this
+	 * inventory, counting every item on each stack.
+	 *
+	 * @param type The class whose items will be counted.
+	 * @return The total stack size of the items of that class.
+	 */
+	public int countOfType(Class<? extends Item> type){
+		TypeSlots t = index().get(type);
+		return t == null ? 0 : t.quantity;
+	}
+
+	/**
+	 * Takes the given number of items of the given class out of
+	 * this inventory, taking from the earliest slots first. Stacks
+	 * are removed whole while the amount left to take covers them,
+	 * and the last one is made smaller if it doesn't. Takes nothing
+	 * if there aren't enough.
+	 *
+	 * @param type The class whose items will be taken.
+	 * @param amount How many items to take, counting every item on each stack.
+	 * @return Whether or not there were enough items to take.
+	 */
+	public boolean consume(Class<? extends Item> type, int amount){
+		if(amount < 0)
+			throw new IllegalArgumentException("Attempting to consume a negative amount of items: " + amount);
+		if(countOfType(type) < amount)
+			return false;
+
+		TypeSlots t = index().get(type);
+		int remaining = amount;
+		for(int i = t.slots.nextSetBit(0); i >= 0 && remaining > 0; i = t.slots.nextSetBit(i + 1)){
+			Item item = items[i];
+			int size = item.getStackSize();
+			if(size <= remaining){
+				removeAtIndex(i);
+				remaining -= size;
+			}
+			else{
+				item.setStackSize(size - remaining);
+				remaining = 0;
 			}
 		}
-		return elements.toArray(new Integer[0]);
+		return true;
 	}
 	
 	/**
@@ -154,12 +226,9 @@ public class Inventory implements Storable, Serializable {
 	 * @return item that matches
 	 */
 	public Item getItemOfType(Class<? extends Item> type){
-		for(int i = 0; i< items.length; i++){
-			if(items[i] != null && items[i].getClass().equals(type)){
-				return items[i];
-			}
-		}
-		return null;
+		TypeSlots t = index().get(type);
+		if(t == null || t.slots.isEmpty()) return null;
+		return items[t.slots.nextSetBit(0)];
 	}
 
 	public int getStorageCapacity(){
@@ -200,10 +269,9 @@ public class Inventory implements Storable, Serializable {
 	 * @return The position of the given item in this inventory, or -1 if it isn't contained.
 	 */
 	public int indexOf(Item item){
-		for(int i = 0; i < storageCapacity; i++){
-			if(items[i] == item) return i;
-		}
-		return -1;
+		index();
+		Integer index = slots.get(item);
+		return index == null ? -1 : index;
 	}
 
 	public Item getItem(int index){
@@ -212,6 +280,48 @@ public class Inventory implements Storable, Serializable {
 		return items[index];
 	}
 
+	/**
+	 * Puts the given item (or nothing) into the given slot,
+	 * replacing whatever was there. Used to mirror the contents
+	 * of an inventory from a snapshot.
+	 *
+	 * @param index The slot to set.
+	 * @param item The item to put in the slot, or null to empty it.
+	 */
+	void setItem(int index, Item item){
+		if(items[index] == item) return;
+		if(items[index] != null) removeAtIndex(index);
+		if(item != null) addItem(item, index);
+	}
+
+	/**
+	 * Sets the character holding this inventory. Changes to its
+	 * contents change whichever zone that character is in.
+	 *
+	 * @param owner The character holding this inventory.
+	 */
+	void setOwner(Character owner){
+		this.owner = owner;
+	}
+
+	private void changed(){
+		if(owner != null && owner.getZone() != null)
+			owner.getZone().changed();
+	}
+
+	/**
+	 * Notes that the stack size of an item in this inventory
+	 * has changed, so that the count of its type stays right.
+	 *
+	 * @param item The item whose stack size changed.
+	 * @param oldStackSize Its stack size before.
+	 */
+	void stackChanged(Item item, int oldStackSize){
+		if(indexOf(item) < 0) return;
+		types.get(item.getClass()).quantity += item.getStackSize() - oldStackSize;
+		changed();
+	}
+
 	/**
 	 * @return An array of all items in this inventory, with null denoting no item at that index.
 	 */
@@ -223,20 +333,75 @@ public class Inventory implements Storable, Serializable {
 		if(index < 0 || index > items.length)
 			throw new IllegalArgumentException("Attempting to remove an item from an inventory at an invalid index.");
 
+		if(items[index] == null) return;
+		index();
+		forget(index);
 		items[index] = null;
 		currentNumItems--;
+		changed();
 	}
 
 	private int nextAvailableSlot(){
 		if(!hasRoom()) return -1;
 
-		for(int i = 0; i < items.length; i++)
-			if(items[i] == null)
-				return i;
+		index();
+		int slot = occupied.nextClearBit(0);
+		if(slot < storageCapacity)
+			return slot;
 
 		throw new IllegalStateException("No next available slot in an inventory that still has room");
 	}
 
+	/**
+	 * @return The slots of each type of item, after building the indices if they are missing.
+	 */
+	private Map<Class<? extends Item>, TypeSlots> index(){
+		if(types == null){
+			occupied = new BitSet(items.length);
+			slots = new IdentityHashMap<Item, Integer>();
+			types = new HashMap<Class<? extends Item>, TypeSlots>();
+			for(int i = 0; i < items.length; i++){
+				if(items[i] != null)
+					record(i);
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Adds the item in a slot to the indices.
+	 */
+	private void record(int index){
+		Item item = items[index];
+		occupied.set(index);
+		slots.put(item, index);
+		TypeSlots t = types.get(item.getClass());
+		if(t == null){
+			t = new TypeSlots();
+			types.put(item.getClass(), t);
+		}
+		t.slots.set(index);
+		t.quantity += item.getStackSize();
+		item.setInventory(this);
+	}
+
+	/**
+	 * Removes the item in a slot from the indices.
+	 */
+	private void forget(int index){
+		Item item = items[index];
+		occupied.clear(index);
+		TypeSlots t = types.get(item.getClass());
+		t.slots.clear(index);
+		t.quantity -= item.getStackSize();
+		Integer slot = slots.get(item);
+		if(slot != null && slot == index){
+			slots.remove(item);
+			if(item.getInventory() == this)
+				item.setInventory(null);
+		}
+	}
+
 	@Override
 	public boolean equals(Object o){
 		if(o instanceof Inventory){
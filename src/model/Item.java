@@ -27,6 +27,10 @@ public abstract class Item implements Storable, Serializable, Drawable {
 	
 	private int stackSize = 1;
 	private boolean stackable;
+	// The zone whose list of items this item is in, if any
+	private transient Zone zone;
+	// The inventory holding this item, which counts how many of each type it has
+	private transient Inventory inventory;
 	
 	// Unique identifier for this item
 	private long id;
@@ -105,7 +109,10 @@ public abstract class Item implements Storable, Serializable, Drawable {
 		if(newValue < 0)
 			throw new IllegalArgumentException("Attempting to stack an item with a negative stack size.");
 		
+		int old = stackSize;
 		stackSize = newValue;
+		if(inventory != null)
+			inventory.stackChanged(this, old);
 	}
 	
 	/**
@@ -139,8 +146,11 @@ public abstract class Item implements Storable, Serializable, Drawable {
 	public void onPickUp(){
 		if(inInventory())
 			throw new IllegalStateException("Attempting to pick up an item that is already contained in an inventory.");
+		Point from = worldPosition;
 		inInventory = true;
 		worldPosition = null;
+		if(zone != null)
+			zone.itemMoved(this, from);
 	}
 	
 	/**
@@ -157,6 +167,15 @@ public abstract class Item implements Storable, Serializable, Drawable {
 			throw new IllegalStateException("Attempting to drop an item that isn't contained in an inventory.");
 		inInventory = false;
 		this.worldPosition = worldPos;
+		if(zone == newZone){
+			newZone.itemMoved(this, null);
+		}
+		else{
+			// Carried in from another zone (or never in one)
+			if(zone != null)
+				zone.removeItem(this);
+			newZone.addItem(this);
+		}
 	}
 	
 	/**
@@ -182,7 +201,32 @@ public abstract class Item implements Storable, Serializable, Drawable {
 	public void teleportTo(Point newPos) throws IllegalStateException {
 		if(inInventory())
 			throw new IllegalStateException("Attempting to teleport an item which is in an inventory.");
+		Point from = worldPosition;
 		this.worldPosition = newPos;
+		if(zone != null)
+			zone.itemMoved(this, from);
+	}
+	
+	/**
+	 * Sets the location and stack size of this item directly,
+	 * without any of the checks or events that normally go with
+	 * picking up or dropping it. Only used to mirror an item's
+	 * state from a snapshot.
+	 * 
+	 * @param inInventory Whether or not this item is in an inventory.
+	 * @param worldPosition The world position of this item, if it's in the world.
+	 * @param stackSize The number of this item on the stack.
+	 */
+	void restore(boolean inInventory, Point worldPosition, int stackSize){
+		Point from = this.inInventory ? null : this.worldPosition;
+		this.inInventory = inInventory;
+		this.worldPosition = inInventory ? null : worldPosition;
+		int oldStackSize = this.stackSize;
+		this.stackSize = stackSize;
+		if(zone != null)
+			zone.itemMoved(this, from);
+		if(inventory != null)
+			inventory.stackChanged(this, oldStackSize);
 	}
 	
 	/**
@@ -200,6 +244,8 @@ public abstract class Item implements Storable, Serializable, Drawable {
 		Item matchItem = player.getInventory().getItemOfType(this.getClass());
 		if(this.stackable() & matchItem != null){
 			matchItem.setStackSize(matchItem.getStackSize() + 1);
+			if(player.getZone() != null)
+				player.getZone().changed();
 		}
 		
 		// If we can't, we try to place it in a new slot
@@ -209,6 +255,22 @@ public abstract class Item implements Storable, Serializable, Drawable {
 		}
 	}
 	
+	Zone getZone(){
+		return zone;
+	}
+
+	Inventory getInventory(){
+		return inventory;
+	}
+
+	void setInventory(Inventory inventory){
+		this.inventory = inventory;
+	}
+
+	void setZone(Zone zone){
+		this.zone = zone;
+	}
+
 	/**
 	 * @return The unique ID of this item.
 	 */
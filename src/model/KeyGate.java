@@ -105,6 +105,8 @@ public class KeyGate extends Gate implements Serializable, Storable {
 	 */
 	public void setPassable(boolean passable){
 		this.passable = passable;
+		if(getZone() != null)
+			getZone().entityChanged(this);
 	}
 
 
@@ -0,0 +1,245 @@
+package model;
+
+import java.awt.Point;
+import java.util.Arrays;
+
+import util.Direction;
+
+/**
+ * A* search over the tiles of a zone. Tiles are identified by their
+ * index, y*width + x, and everything the search needs is kept in arrays
+ * indexed by tile which are reused from one search to the next, so a
+ * search allocates nothing but the path it returns.
+ *
+ * Searches aren't thread safe; each thread gets its own finder
+ * through forThread().
+ */
+class PathFinder {
+	private static final ThreadLocal<PathFinder> FINDERS = new ThreadLocal<PathFinder>(){
+		@Override
+		protected PathFinder initialValue(){
+			return new PathFinder();
+		}
+	};
+
+	/**
+	 * @return The path finder for the calling thread.
+	 */
+	static PathFinder forThread(){
+		return FINDERS.get();
+	}
+
+	// A tile's cost and parent are only valid if its stamp is the
+	// current search's; this saves clearing the arrays every search
+	private int search;
+	private int[] stamp = new int[0];
+	private int[] cost = new int[0];
+	private int[] parent = new int[0];
+
+	// Where each tile is in the heap, or -1 once it has been expanded
+	private int[] heapPos = new int[0];
+
+	// Binary min-heap of tiles, ordered by estimated total cost
+	private int[] heap = new int[0];
+	private int[] heapKey = new int[0];
+	private int heapSize;
+
+	private PathFinder(){
+	}
+
+	private void ensureCapacity(int tiles){
+		if(stamp.length >= tiles) return;
+		stamp = new int[tiles];
+		cost = new int[tiles];
+		parent = new int[tiles];
+		heapPos = new int[tiles];
+		heap = new int[tiles];
+		heapKey = new int[tiles];
+		search = 0;
+	}
+
+	/**
+	 * Finds a shortest path between two points of a zone. See Zone.getPath.
+	 *
+	 * @return The directions to move in, or null if there is no path.
+	 */
+	Direction[] find(Zone zone, Point start, Point end){
+		int[] tiles = findTiles(zone, start, end);
+		if(tiles == null)
+			return null;
+
+		int width = zone.getWidth();
+		Direction[] directions = new Direction[tiles.length];
+		int from = start.y*width + start.x;
+		for(int i = 0; i < tiles.length; i++){
+			directions[i] = step(from, tiles[i], width);
+			from = tiles[i];
+		}
+		return directions;
+	}
+
+	/**
+	 * Finds a shortest path between two points of a zone.
+	 *
+	 * @return The tiles to move onto in turn, not including the start, or null if there is no path.
+	 */
+	int[] findTiles(Zone zone, Point start, Point end){
+		int width = zone.getWidth();
+		int height = zone.getHeight();
+		if(start.x < 0 || start.y < 0 || start.x >= width || start.y >= height)
+			return null;
+		if(start.equals(end))
+			return new int[0];
+		// The end is the only tile whose obstruction decides the answer outright
+		if(zone.isBlocked(end.x, end.y))
+			return null;
+
+		ensureCapacity(width * height);
+		if(++search == Integer.MAX_VALUE){
+			Arrays.fill(stamp, 0);
+			search = 1;
+		}
+		heapSize = 0;
+
+		int goal = end.y*width + end.x;
+		int first = start.y*width + start.x;
+		visit(first, 0, -1, heuristic(start.x, start.y, end));
+
+		while(heapSize > 0){
+			int current = pop();
+			if(current == goal)
+				return constructPath(goal);
+
+			int x = current % width;
+			int y = current / width;
+			int nextCost = cost[current] + 1;
+			if(x + 1 < width) relax(zone, current, x + 1, y, current + 1, nextCost, end);
+			if(x > 0) relax(zone, current, x - 1, y, current - 1, nextCost, end);
+			if(y + 1 < height) relax(zone, current, x, y + 1, current + width, nextCost, end);
+			if(y > 0) relax(zone, current, x, y - 1, current - width, nextCost, end);
+		}
+
+		return null; // We can't find a path at all!
+	}
+
+	/**
+	 * Considers reaching a neighbouring tile from the current one.
+	 */
+	private void relax(Zone zone, int from, int x, int y, int tile, int newCost, Point end){
+		if(stamp[tile] == search){
+			// Already expanded, or already reached at least as cheaply
+			if(heapPos[tile] < 0 || newCost >= cost[tile])
+				return;
+			cost[tile] = newCost;
+			parent[tile] = from;
+			heapKey[heapPos[tile]] = newCost + heuristic(x, y, end);
+			siftUp(heapPos[tile]);
+			return;
+		}
+		if(zone.isBlocked(x, y))
+			return;
+		visit(tile, newCost, from, heuristic(x, y, end));
+	}
+
+	private void visit(int tile, int tileCost, int from, int heuristic){
+		stamp[tile] = search;
+		cost[tile] = tileCost;
+		parent[tile] = from;
+		heap[heapSize] = tile;
+		heapKey[heapSize] = tileCost + heuristic;
+		heapPos[tile] = heapSize;
+		siftUp(heapSize++);
+	}
+
+	/**
+	 * Manhattan distance, which is exact on an open grid with no diagonal moves.
+	 */
+	private static int heuristic(int x, int y, Point end){
+		return Math.abs(x - end.x) + Math.abs(y - end.y);
+	}
+
+	private int[] constructPath(int goal){
+		int length = 0;
+		for(int tile = goal; parent[tile] >= 0; tile = parent[tile])
+			length++;
+
+		int[] tiles = new int[length];
+		for(int tile = goal; parent[tile] >= 0; tile = parent[tile])
+			tiles[--length] = tile;
+		return tiles;
+	}
+
+	/**
+	 * @return The direction to move in to get from one tile to a neighbouring one.
+	 */
+	static Direction step(int from, int to, int width){
+		int step = to - from;
+		if(step == 1) return Direction.of(Direction.EAST);
+		if(step == -1) return Direction.of(Direction.WEST);
+		if(step == width) return Direction.of(Direction.SOUTH);
+		return Direction.of(Direction.NORTH);
+	}
+
+	/**
+	 * Orders heap entries by estimated total cost, preferring the
+	 * one furthest along on ties, since it is likely closer to the end.
+	 */
+	private boolean before(int a, int b){
+		if(heapKey[a] != heapKey[b])
+			return heapKey[a] < heapKey[b];
+		return cost[heap[a]] > cost[heap[b]];
+	}
+
+	private int pop(){
+		int top = heap[0];
+		heapPos[top] = -1;
+		heapSize--;
+		if(heapSize > 0){
+			move(heapSize, 0);
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int i){
+		while(i > 0){
+			int up = (i - 1) >> 1;
+			if(!before(i, up))
+				return;
+			swap(i, up);
+			i = up;
+		}
+	}
+
+	private void siftDown(int i){
+		while(true){
+			int left = 2*i + 1;
+			if(left >= heapSize)
+				return;
+			int smallest = left;
+			if(left + 1 < heapSize && before(left + 1, left))
+				smallest = left + 1;
+			if(!before(smallest, i))
+				return;
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void move(int from, int to){
+		heap[to] = heap[from];
+		heapKey[to] = heapKey[from];
+		heapPos[heap[to]] = to;
+	}
+
+	private void swap(int a, int b){
+		int tile = heap[a];
+		int key = heapKey[a];
+		heap[a] = heap[b];
+		heapKey[a] = heapKey[b];
+		heap[b] = tile;
+		heapKey[b] = key;
+		heapPos[heap[a]] = a;
+		heapPos[heap[b]] = b;
+	}
+}
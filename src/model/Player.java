@@ -5,6 +5,7 @@ import datastorage.StorableFactory;
 
 import java.awt.Point;
 import java.io.Serializable;
+import java.util.List;
 import java.util.Timer;
 
 import org.w3c.dom.*;
@@ -28,6 +29,14 @@ public class Player extends Character implements Storable, Serializable {
 	private Weapon equipped;
 	
 	private transient Point toMove;
+	// The zone toMove is in, if it isn't this player's zone
+	private transient Zone toMoveZone;
+	// The path being followed to toMove
+	private transient Route route;
+	// When heading for another zone, the next portal to go through
+	// and the tile beside it to walk to
+	private transient Portal viaPortal;
+	private transient Point portalApproach;
 	private transient Enemy toAttack;
 	/**
 	 * Constructor for a player/ main character
@@ -40,6 +49,7 @@ public class Player extends Character implements Storable, Serializable {
 		super (zone, coord);
 		this.pupo = isPupo;
 		this.inventory = new Inventory(10);
+		this.inventory.setOwner(this);
 	}
 	
 	private Player(Zone[] zones, Element elem){
@@ -47,6 +57,7 @@ public class Player extends Character implements Storable, Serializable {
 		this.pupo = Boolean.parseBoolean(elem.getAttribute("pupo"));
 		Inventory.Factory factory = new Inventory.Factory();
 		this.inventory = factory.fromXMLElement((Element)elem.getChildNodes().item(0));
+		this.inventory.setOwner(this);
 	}
 	
 	/**
@@ -55,6 +66,29 @@ public class Player extends Character implements Storable, Serializable {
 	 */
 	@Override
 	public void tick(){
+		act();
+		// Only come back next tick if there's still something to do
+		if(hasWorkLeft())
+			wakeAfter(1);
+	}
+	
+	private boolean hasWorkLeft(){
+		if(toAttack != null)
+			return true;
+		if(toMove == null)
+			return false;
+		return (toMoveZone != null && toMoveZone != getZone()) || !isAt(toMove);
+	}
+	
+	private boolean isAt(Point p){
+		return p.x == getX() && p.y == getY();
+	}
+	
+	private void act(){
+		// Enemies in other zones are out of reach
+		if(toAttack != null && toAttack.getZone() != getZone())
+			toAttack = null;
+
 		if(toAttack != null){
 			if(equipped != null){
 				toAttack.damage(equipped.getDamage());
@@ -69,15 +103,25 @@ public class Player extends Character implements Storable, Serializable {
 			}
 		}
 		else if(toMove != null){
-			if(toMove.equals(getCoord().getPoint()))
+			if(toMoveZone != null && toMoveZone != getZone()){
+				moveToZoneTick();
+				return;
+			}
+			if(isAt(toMove))
 				return;
 			
 			moveToPointTick(toMove);
 		}
 	}
 	
+	@Override
+	public boolean isBusy(){
+		return toMove != null || toAttack != null;
+	}
+
 	public void attack(Enemy victim){
 		toAttack = victim;
+		wakeAfter(1);
 	}
 	/**
 	 * Manually equip the provided weapon
@@ -90,12 +134,24 @@ public class Player extends Character implements Storable, Serializable {
 		inventory.removeItem(newWeapon);
 		inventory.addItem(equipped);
 		equipped = newWeapon;
+		if(getZone() != null)
+			getZone().changed();
 	}
 	
 	public Weapon getEquipped(){
 		return equipped;
 	}
 	
+	/**
+	 * Sets the equipped weapon without touching the inventory;
+	 * used to mirror a player's state from a snapshot.
+	 */
+	void setEquipped(Weapon weapon){
+		this.equipped = weapon;
+		if(getZone() != null)
+			getZone().changed();
+	}
+	
 	@Override
 	public boolean equals(Object o){
 		if(o instanceof Player){
@@ -118,8 +174,19 @@ public class Player extends Character implements Storable, Serializable {
 	@Override
 	public void setCoord(Coord coord){
 		super.setCoord(coord);
-		
-		for(Item item : getZone().getItems(coord.getPoint())){
+		collideWithItems();
+	}
+	
+	@Override
+	public void rotate(boolean isClockwise){
+		super.rotate(isClockwise);
+		collideWithItems();
+	}
+	
+	private void collideWithItems(){
+		if(!getZone().hasItemsAt(getX(), getY()))
+			return;
+		for(Item item : getZone().getItems(getCoord().getPoint())){
 			item.onCollision(this);
 		}
 	}
@@ -161,13 +228,9 @@ public class Player extends Character implements Storable, Serializable {
 	private boolean moveInstant(Direction dir, int amount){
 		boolean ok = super.moveIn(dir, amount);
 		
-		if(ok){
-			for(Item item : getZone().getItems(this.getCoord().getPoint())){
-				item.onCollision(this);
-				if(item.getPosition() == null)
-					getZone().removeItem(item);
-			}
-		}
+		// Moving no longer goes through setCoord
+		if(ok)
+			collideWithItems();
 		
 		return ok;
 	}
@@ -178,10 +241,121 @@ public class Player extends Character implements Storable, Serializable {
 	 * if they can't move to that point.
 	 */
 	public void moveToPoint(Point newPoint){
+		moveToPoint(null, newPoint);
+	}
+	
+	/**
+	 * Schedules this player to move to the given
+	 * point in the given zone, going through portals
+	 * to get there if need be. Halts the player's
+	 * movement if they can't get there.
+	 * 
+	 * @param zone The zone to move to, or null for the zone the player is in.
+	 * @param newPoint The point in that zone to move to.
+	 */
+	public void moveToPoint(Zone zone, Point newPoint){
 		toMove = newPoint;
+		toMoveZone = zone;
+		viaPortal = null;
 		tick();
 	}
 	
+	/**
+	 * Stops moving towards the point given to moveToPoint.
+	 */
+	private void stopMoving(){
+		toMove = null;
+		toMoveZone = null;
+		route = null;
+		viaPortal = null;
+	}
+	
+	/**
+	 * Performs one tick of moving this player towards
+	 * a point in another zone: walking to the next portal
+	 * on the way, or going through it.
+	 */
+	private void moveToZoneTick(){
+		Point at = getCoord().getPoint();
+		if(viaPortal == null || viaPortal.getZone() != getZone()){
+			// Planning reads other zones, so if zones are being ticked in
+			// parallel it has to wait until they have all finished; the
+			// route is then walked from the next tick on
+			if(getZone().isTickingInParallel()){
+				getZone().defer(new Runnable(){
+					@Override
+					public void run(){
+						if(toMove != null && toMoveZone != null && toMoveZone != getZone())
+							planRoute();
+					}
+				});
+				return;
+			}
+			if(!planRoute())
+				return;
+		}
+		
+		if(at.equals(portalApproach)){
+			Portal portal = viaPortal;
+			viaPortal = null;
+			for(Interaction i : portal.getInteractions()){
+				if(i instanceof UsePortal)
+					i.execute(this);
+			}
+			return;
+		}
+		
+		moveToPointTick(portalApproach);
+		if(toMove == null)
+			stopMoving();
+	}
+	
+	/**
+	 * Picks the next portal to go through on the way to toMoveZone,
+	 * stopping if there is no way there.
+	 *
+	 * @return Whether or not a route was found.
+	 */
+	private boolean planRoute(){
+		// Only the route to the next portal is walked tile by
+		// tile; the rest is planned over the portals alone
+		Point at = getCoord().getPoint();
+		PortalGraph graph = getZone().getPortalGraph();
+		List<Portal> portals = graph == null ? null : graph.plan(getZone(), at, toMoveZone, toMove);
+		if(portals == null || portals.isEmpty()){
+			stopMoving();
+			return false; // Couldn't find a route
+		}
+		viaPortal = portals.get(0);
+		portalApproach = approach(viaPortal, at);
+		if(portalApproach == null){
+			stopMoving();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return The nearest tile beside a portal to a point, or null if none can be reached.
+	 */
+	private Point approach(Portal portal, Point from){
+		Zone zone = portal.getZone();
+		Point p = portal.getWorldPosition().getPoint();
+		Point[] beside = { new Point(p.x - 1, p.y), new Point(p.x + 1, p.y),
+				new Point(p.x, p.y - 1), new Point(p.x, p.y + 1) };
+		Point best = null;
+		int bestDistance = -1;
+		for(Point b : beside){
+			if(zone.isSolid(b.x, b.y)) continue;
+			int d = zone.getDistanceTo(b, from);
+			if(d >= 0 && (best == null || d < bestDistance)){
+				best = b;
+				bestDistance = d;
+			}
+		}
+		return best;
+	}
+	
 	/**
 	 * Performs one tick of moving this player to the
 	 * given point.
@@ -191,17 +365,25 @@ public class Player extends Character implements Storable, Serializable {
 	 * @param newPoint The point to move towards.
 	 */
 	private void moveToPointTick(Point newPoint){
-		// Doing this every movement will be a bit costly, but
-		// since we have quite a rough grid and slow ticks, it's fine
-		Direction[] path = getZone().getPath(getCoord().getPoint(), newPoint);
-		if(path == null){
+		// The path is kept between ticks, and only searched for
+		// again when it no longer leads from where we are
+		Direction nextDir = null;
+		if(route != null && route.leadsFrom(getZone(), getX(), getY(), newPoint))
+			nextDir = route.nextStep();
+		if(nextDir == null){
+			route = Route.plan(getZone(), getCoord().getPoint(), newPoint);
+			if(route != null)
+				nextDir = route.nextStep();
+		}
+		if(nextDir == null){
 			toMove = null;
+			route = null;
 			return; // Couldn't find a path
 		}
 		
-		Direction nextDir = path[0];
-		this.getCoord().setFacing(nextDir);
-		moveInstant(nextDir, 1);
+		this.face(nextDir);
+		if(moveInstant(nextDir, 1))
+			route.stepped();
 	}
 	
 	@Override
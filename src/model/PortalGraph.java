@@ -0,0 +1,212 @@
+package model;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plans routes between zones. Rather than searching tile by tile across
+ * the whole world, routes are planned over the portals: how far it is to
+ * walk between each pair of portals in a zone is worked out once (and
+ * again only if the zone's terrain changes), so a route is found by
+ * searching a graph with one node per portal. Walking each part of the
+ * route is left to the zone it is in.
+ *
+ * Distances only take tiles and entities into account, not characters.
+ * Planning reads (and caches things about) every zone on the way, so it
+ * mustn't happen while zones are being ticked in parallel.
+ */
+class PortalGraph {
+	private static final int UNREACHABLE = -1;
+
+	private final Portal[] portals;
+	// Index of each portal's pair in portals, or -1 if it has none
+	private final int[] pairs;
+	private final Map<Zone, Links> links = new IdentityHashMap<Zone, Links>();
+
+	/**
+	 * The portals in one zone, and how far apart they are.
+	 */
+	private static class Links {
+		int[] portals;
+		int size;
+		// distance[a][b]: steps from arriving through portals[a] to using portals[b]
+		int[][] distance;
+		long terrainVersion = -1;
+	}
+
+	/**
+	 * @param portals Every portal in the world, already paired up.
+	 */
+	PortalGraph(List<Portal> portals){
+		this.portals = portals.toArray(new Portal[portals.size()]);
+		this.pairs = new int[this.portals.length];
+		Map<Portal, Integer> indices = new IdentityHashMap<Portal, Integer>();
+		for(int i = 0; i < this.portals.length; i++){
+			indices.put(this.portals[i], i);
+		}
+
+		Map<Zone, Integer> counts = new IdentityHashMap<Zone, Integer>();
+		for(int i = 0; i < this.portals.length; i++){
+			Integer pair = indices.get(this.portals[i].getPairPortal());
+			pairs[i] = pair == null || pair == i ? -1 : pair;
+
+			Zone zone = this.portals[i].getZone();
+			Integer count = counts.get(zone);
+			counts.put(zone, count == null ? 1 : count + 1);
+		}
+
+		// Each zone's portals, in the order they are in the list
+		for(int i = 0; i < this.portals.length; i++){
+			Zone zone = this.portals[i].getZone();
+			Links l = links.get(zone);
+			if(l == null){
+				l = new Links();
+				l.portals = new int[counts.get(zone)];
+				links.put(zone, l);
+			}
+			l.portals[l.size++] = i;
+		}
+	}
+
+	/**
+	 * Plans a route from one point in the world to another.
+	 *
+	 * @param fromZone The zone to start in.
+	 * @param from The point to start at.
+	 * @param toZone The zone to end in.
+	 * @param to The point to end at.
+	 * @return The portals to go through in order, which is empty if the end can be walked to directly, or null if there is no route.
+	 */
+	List<Portal> plan(Zone fromZone, Point from, Zone toZone, Point to){
+		if(toZone.isSolid(to.x, to.y))
+			return null;
+
+		int n = portals.length;
+		// cost[i]: fewest steps to use portal i, with via[i] the portal used before it
+		int[] cost = new int[n];
+		int[] via = new int[n];
+		boolean[] done = new boolean[n];
+		Arrays.fill(cost, Integer.MAX_VALUE);
+
+		int best = Integer.MAX_VALUE;
+		int bestLast = -1;
+		if(fromZone == toZone){
+			int direct = fromZone.getDistanceTo(from, to);
+			if(direct != UNREACHABLE){
+				best = direct;
+			}
+		}
+
+		Links start = links.get(fromZone);
+		if(start != null){
+			for(int i : start.portals){
+				int d = fromZone.getDistanceTo(from, portals[i].getWorldPosition().getPoint());
+				if(d != UNREACHABLE){
+					cost[i] = d;
+					via[i] = -1;
+				}
+			}
+		}
+
+		// Dijkstra's algorithm; there are few enough portals that
+		// picking the nearest by looking at them all is fine
+		while(true){
+			int current = -1;
+			for(int i = 0; i < n; i++){
+				if(!done[i] && cost[i] != Integer.MAX_VALUE && (current < 0 || cost[i] < cost[current]))
+					current = i;
+			}
+			if(current < 0 || cost[current] >= best)
+				break;
+			done[current] = true;
+
+			int arrival = pairs[current];
+			if(arrival < 0) continue;
+			int arrived = cost[current] + 1;
+			Portal arrivedAt = portals[arrival];
+			Zone zone = arrivedAt.getZone();
+
+			if(zone == toZone){
+				int exit = distanceFrom(arrivedAt, to);
+				if(exit != UNREACHABLE && arrived + exit < best){
+					best = arrived + exit;
+					bestLast = current;
+				}
+			}
+
+			Links l = linksFor(zone);
+			int a = indexIn(l, arrival);
+			for(int b = 0; b < l.portals.length; b++){
+				int next = l.portals[b];
+				int d = l.distance[a][b];
+				if(d == UNREACHABLE || done[next]) continue;
+				if(arrived + d < cost[next]){
+					cost[next] = arrived + d;
+					via[next] = current;
+				}
+			}
+		}
+
+		if(best == Integer.MAX_VALUE)
+			return null;
+		List<Portal> route = new ArrayList<Portal>();
+		for(int i = bestLast; i >= 0; i = via[i])
+			route.add(portals[i]);
+		Collections.reverse(route);
+		return route;
+	}
+
+	/**
+	 * @return The portal-to-portal distances for a zone, worked out again if its terrain has changed.
+	 */
+	private Links linksFor(Zone zone){
+		Links l = links.get(zone);
+		if(l.terrainVersion == zone.getTerrainVersion() && l.distance != null)
+			return l;
+
+		int k = l.portals.length;
+		l.distance = new int[k][k];
+		for(int b = 0; b < k; b++){
+			Point target = portals[l.portals[b]].getWorldPosition().getPoint();
+			for(int a = 0; a < k; a++){
+				l.distance[a][b] = a == b ? UNREACHABLE : distanceFrom(portals[l.portals[a]], target);
+			}
+		}
+		l.terrainVersion = zone.getTerrainVersion();
+		return l;
+	}
+
+	private static int indexIn(Links l, int portal){
+		for(int i = 0; i < l.portals.length; i++){
+			if(l.portals[i] == portal) return i;
+		}
+		throw new IllegalStateException("Portal isn't in its own zone's links");
+	}
+
+	/**
+	 * @return The fewest steps from beside a portal, where travellers arrive, to a point in its zone.
+	 */
+	private static int distanceFrom(Portal portal, Point to){
+		Zone zone = portal.getZone();
+		Point p = portal.getWorldPosition().getPoint();
+		int best = UNREACHABLE;
+		best = closer(best, zone, p.x - 1, p.y, to);
+		best = closer(best, zone, p.x + 1, p.y, to);
+		best = closer(best, zone, p.x, p.y - 1, to);
+		best = closer(best, zone, p.x, p.y + 1, to);
+		return best;
+	}
+
+	private static int closer(int best, Zone zone, int x, int y, Point to){
+		if(zone.isSolid(x, y))
+			return best;
+		int d = zone.getDistanceTo(new Point(x, y), to);
+		if(d == UNREACHABLE) return best;
+		return best == UNREACHABLE || d < best ? d : best;
+	}
+}
@@ -0,0 +1,124 @@
+package model;
+
+import java.awt.Point;
+
+import util.Direction;
+
+/**
+ * A path a character is partway along, kept between ticks so that
+ * the character doesn't have to search for a path every step.
+ *
+ * While nothing in the zone becomes obstructed or unobstructed, the
+ * next step is simply read off the route. When something does, the
+ * rest of the route is checked, and if part of it has become
+ * obstructed only that part is searched for again, from where the
+ * character is to the first clear tile after the obstruction.
+ */
+class Route {
+	private final Zone zone;
+	private final Point end;
+	private final int width;
+
+	// Tile indices (y*width + x) to move onto in turn
+	private int[] tiles;
+	private int next;
+	// The tile the character should be standing on
+	private int position;
+	// The zone's collision version when the route was last known to be clear
+	private long collisionVersion;
+
+	private Route(Zone zone, Point start, Point end, int[] tiles){
+		this.zone = zone;
+		this.end = new Point(end);
+		this.width = zone.getWidth();
+		this.tiles = tiles;
+		this.position = start.y*width + start.x;
+		this.collisionVersion = zone.getCollisionVersion();
+	}
+
+	/**
+	 * Plans a route between two points in a zone.
+	 *
+	 * @return The route, or null if there is no path between the points.
+	 */
+	static Route plan(Zone zone, Point start, Point end){
+		int[] tiles = zone.getTilePath(start, end);
+		if(tiles == null)
+			return null;
+		return new Route(zone, start, end, tiles);
+	}
+
+	/**
+	 * Whether or not this route is still the one to follow for a
+	 * character at the given tile, in the given zone, heading to
+	 * the given end.
+	 */
+	boolean leadsFrom(Zone zone, int x, int y, Point end){
+		return this.zone == zone && this.end.equals(end)
+				&& x == position % width && y == position / width;
+	}
+
+	/**
+	 * Works out which way to move next, repairing the route first
+	 * if anything in the zone has become obstructed since it was
+	 * last checked.
+	 *
+	 * @return The direction to move in, or null if the route is finished or can no longer be followed.
+	 */
+	Direction nextStep(){
+		if(next >= tiles.length)
+			return null;
+		if(zone.getCollisionVersion() != collisionVersion){
+			if(!repair())
+				return null;
+			collisionVersion = zone.getCollisionVersion();
+		}
+		return PathFinder.step(position, tiles[next], width);
+	}
+
+	/**
+	 * Notes that the character has taken the step given by nextStep().
+	 */
+	void stepped(){
+		position = tiles[next++];
+		// The character's own move is the only change since the route was checked
+		collisionVersion = zone.getCollisionVersion();
+	}
+
+	private boolean isBlocked(int tile){
+		return zone.isBlocked(tile % width, tile / width);
+	}
+
+	/**
+	 * Finds any obstructed part of the rest of the route and
+	 * replaces it with a way around.
+	 *
+	 * @return Whether or not the route can still be followed.
+	 */
+	private boolean repair(){
+		int blocked = next;
+		while(blocked < tiles.length && !isBlocked(tiles[blocked]))
+			blocked++;
+		if(blocked == tiles.length)
+			return true; // still clear
+
+		int rejoin = blocked + 1;
+		while(rejoin < tiles.length && isBlocked(tiles[rejoin]))
+			rejoin++;
+		if(rejoin == tiles.length)
+			return false; // the end itself is obstructed
+
+		Point from = new Point(position % width, position / width);
+		Point to = new Point(tiles[rejoin] % width, tiles[rejoin] / width);
+		int[] detour = zone.getTilePath(from, to);
+		if(detour == null)
+			return false;
+
+		int[] repaired = new int[detour.length + tiles.length - rejoin - 1];
+		System.arraycopy(detour, 0, repaired, 0, detour.length);
+		System.arraycopy(tiles, rejoin + 1, repaired, detour.length, tiles.length - rejoin - 1);
+		tiles = repaired;
+		next = 0;
+		return true;
+	}
+}
@@ -37,6 +37,11 @@ public abstract class Tile implements Storable,Serializable, Drawable {
 	 * @return Whether or not this tile collides with objects.
 	 */
 	public abstract boolean collides();
+
+	/**
+	 * @return The type of this tile, which is all a zone stores about it.
+	 */
+	public abstract TileType getType();
 	
 	/**
 	 * 
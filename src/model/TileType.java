@@ -0,0 +1,70 @@
+package model;
+
+import java.awt.Point;
+
+/**
+ * The kinds of tile there are. Zones store only which type each of
+ * their tiles is, one byte per tile; everything about the tile is
+ * shared through its type, and Tile objects are only made when
+ * something asks for one.
+ */
+public enum TileType {
+	FLOOR(false, "images/floorTile.png") {
+		@Override
+		public Tile createTile(Point position){
+			return new FloorTile(position);
+		}
+	},
+	WALL(true, "images/wallTile.png") {
+		@Override
+		public Tile createTile(Point position){
+			return new WallTile(position);
+		}
+	};
+
+	// values() copies the array every time it's called
+	private static final TileType[] TYPES = values();
+
+	private final boolean collides;
+	private final String drawImagePath;
+
+	private TileType(boolean collides, String drawImagePath){
+		this.collides = collides;
+		this.drawImagePath = drawImagePath;
+	}
+
+	/**
+	 * @return Whether or not tiles of this type collide with objects.
+	 */
+	public boolean collides(){
+		return collides;
+	}
+
+	public String getDrawImagePath(){
+		return drawImagePath;
+	}
+
+	/**
+	 * @return The number zones store for tiles of this type.
+	 */
+	public byte getID(){
+		return (byte)ordinal();
+	}
+
+	/**
+	 * @param id A number returned by getID().
+	 * @return The type with that ID.
+	 */
+	public static TileType fromID(byte id){
+		return TYPES[id];
+	}
+
+	/**
+	 * Makes a tile of this type, for code which works with tiles
+	 * rather than tile types.
+	 *
+	 * @param position The position of the tile.
+	 * @return A new tile of this type.
+	 */
+	public abstract Tile createTile(Point position);
+}
@@ -40,8 +40,22 @@ public class UsePortal extends Interaction implements Serializable {
 	}
 
 	@Override
-	public String execute(Player player) {
+	public String execute(final Player player) {
+		// Travelling changes two zones, so if zones are being ticked
+		// in parallel it has to wait until they have all finished
+		if(portal.getZone().isTickingInParallel()){
+			portal.getZone().defer(new Runnable(){
+				@Override
+				public void run(){
+					travel(player);
+				}
+			});
+			return null;
+		}
+		return travel(player);
+	}
 
+	private String travel(Player player) {
 		Portal origin = this.portal;
 		Portal destination = origin.getPairPortal();
 		//first check if the destination has room
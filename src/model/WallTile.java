@@ -22,12 +22,17 @@ public class WallTile extends Tile {
 	
 	@Override
 	public boolean collides(){
-		return true;
+		return getType().collides();
+	}
+
+	@Override
+	public TileType getType(){
+		return TileType.WALL;
 	}
 	
 	@Override
 	public String getDrawImagePath(DrawDirection d) {
-		return "images/wallTile.png";
+		return getType().getDrawImagePath();
 	}
 	
 	public static class Factory implements StorableFactory<WallTile> {
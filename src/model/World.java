@@ -3,7 +3,11 @@ package model;
 import java.awt.Point;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -12,6 +16,7 @@ import datastorage.Storable;
 import datastorage.StorableFactory;
 import util.Coord;
 import util.Direction;
+import util.LongMap;
 
 /**
  * The World contains many Zones and the two Players.
@@ -26,51 +31,115 @@ public class World implements Storable {
 	private Zone[] zones;
 	private Player Pupo;
 	private Player Yelo;
+	private LongMap<Zone> zonesByID;
+
+	// The number of times this world has ticked
+	private long tickCount;
 
 	public World( String name, Zone[] zones, Player pupo, Player yelo){
 		this.name = name;
 		this.zones = zones;
 		this.Pupo = pupo;
 		this.Yelo = yelo;
+		this.zonesByID = new LongMap<Zone>(zones.length);
+		for(Zone z : zones){
+			if(z != null) zonesByID.put(z.getID(), z);
+		}
 		syncPortals();
 	}
 	/**
-	 * This is used to pair all the portals together that have the same id.
+	 * This is used to pair all the portals together that have the same id,
+	 * and to set up planning routes through them between zones.
 	 * This is useful when creating a world.
 	 * Each portal must have another portal with the same id, and only 1 other. 
+	 * 
+	 * @throws IllegalStateException If a portal has no pair, or more than one.
 	 */
 	public void syncPortals(){
-		// get all portals
-		List<Portal> portals = new ArrayList<Portal>();
+		List<Portal> all = new ArrayList<Portal>();
+		Map<String, Portal[]> pairs = new HashMap<String, Portal[]>();
 		for(Zone z: zones){
 			if(z == null) continue;
-			List<Entity> entities = z.getEntities();
-			for(Entity e: entities){
-				if(e instanceof Portal){
-					Portal portal = (Portal)e;
-					portals.add(portal);
+			for(Entity e: z.getEntities()){
+				if(!(e instanceof Portal)) continue;
+				Portal portal = (Portal)e;
+				all.add(portal);
+				
+				Portal[] pair = pairs.get(portal.getPortalID());
+				if(pair == null){
+					pairs.put(portal.getPortalID(), new Portal[]{ portal, null });
 				}
-			}
-		}
-		
-		while(portals.size() > 0){
-			Portal first = portals.get(0);
-			Portal second = null;
-			for(Portal portal: portals){
-				if(portal.getPortalID().equals(first.getPortalID())){
-					second = portal;
+				else if(pair[1] == null){
+					pair[1] = portal;
+					pair[0].setPairPortal(portal);
+					portal.setPairPortal(pair[0]);
+				}
+				else{
+					throw new IllegalStateException("More than two portals have the ID " + portal.getPortalID());
 				}
 			}
-			first.setPairPortal(second);
-			second.setPairPortal(first);
-			portals.remove(first);
-			portals.remove(second);
+		}
+		for(Portal[] pair : pairs.values()){
+			if(pair[1] == null)
+				throw new IllegalStateException("No other portal has the ID " + pair[0].getPortalID());
+		}
+
+		PortalGraph graph = new PortalGraph(all);
+		for(Zone z : zones){
+			if(z != null) z.setPortalGraph(graph);
 		}
 	}
 	
+	/**
+	 * Ticks every zone which has anything happening in it;
+	 * dormant zones are skipped.
+	 */
 	public void tick(){
+		tickCount++;
+		for(Zone zone : zones){
+			if(zone.prepareTick(tickCount))
+				zone.tick();
+		}
+	}
+
+	/**
+	 * Ticks every zone at once, each as a separate task on the given
+	 * pool. Zones don't touch each other while they tick; anything which
+	 * reaches into another zone is deferred, and done once every zone
+	 * has ticked, in zone order, so the result doesn't depend on which
+	 * zone's task happens to finish first. Dormant zones are skipped.
+	 *
+	 * @param pool The pool to tick zones on.
+	 */
+	public void tick(ForkJoinPool pool){
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		List<Runnable> deferred = new ArrayList<Runnable>();
+		tickCount++;
 		for(Zone zone : zones){
-			zone.tick();
+			zone.beginParallelTick();
+		}
+		try{
+			for(final Zone zone : zones){
+				if(!zone.prepareTick(tickCount))
+					continue;
+				tasks.add(pool.submit(new Runnable(){
+					@Override
+					public void run(){
+						zone.tick();
+					}
+				}));
+			}
+			for(ForkJoinTask<?> task : tasks){
+				task.join();
+			}
+		} finally {
+			for(Zone zone : zones){
+				deferred.addAll(zone.endParallelTick());
+			}
+		}
+
+		for(Runnable change : deferred){
+			change.run();
 		}
 	}
 	
@@ -90,11 +159,11 @@ public class World implements Storable {
 		newZones[0] = new Zone("testZone", tiles);
 		//key, i have no idea what size does atm.
 		newZones[0].addItem(new Key(new Point(1,2), "testKey"));
-		newZones[0].addEntity(new KeyGate(Gate.State.LOCKED, newZones[0], new Coord(new Direction(Direction.NORTH), new Point (1,4)), "testKey"));
-		newZones[0].addCharacter(new Slime(newZones[0], new Coord(new Direction(Direction.NORTH), new Point(1, 3))));
+		newZones[0].addEntity(new KeyGate(Gate.State.LOCKED, newZones[0], new Coord(Direction.of(Direction.NORTH), new Point (1,4)), "testKey"));
+		newZones[0].addCharacter(new Slime(newZones[0], new Coord(Direction.of(Direction.NORTH), new Point(1, 3))));
 		//characters
-		Player pupo = new Player(newZones[0], new Coord(new Direction(Direction.NORTH), new Point(1,1)), true);
-		Player yelo = new Player(newZones[0], new Coord(new Direction(Direction.SOUTH),new Point(1,7)), false);
+		Player pupo = new Player(newZones[0], new Coord(Direction.of(Direction.NORTH), new Point(1,1)), true);
+		Player yelo = new Player(newZones[0], new Coord(Direction.of(Direction.SOUTH),new Point(1,7)), false);
 		
 		// add back reference from zone to character
 		newZones[0].addCharacter(pupo);
@@ -134,6 +203,13 @@ public class World implements Storable {
 		return Yelo;
 	}
 
+	/**
+	 * @return Every player in the world, in the order players join a game.
+	 */
+	public Player[] getPlayers() {
+		return new Player[]{ Pupo, Yelo };
+	}
+
 	public Zone[] getZones(){
 		return this.zones;
 	}
@@ -300,27 +376,27 @@ public class World implements Storable {
 		zones[0].addItem(new Key(new Point(3,3), "blue"));
 		zones[0].addItem(new Key(new Point(8,7), "green"));
 		zones[0].addItem(new Key(new Point(10,4), "orange"));
-		Furniture shop1 = new Furniture(zones[0],new Coord(new Direction(Direction.SOUTH),new Point(4,1)),null,"Looks like a shop");
+		Furniture shop1 = new Furniture(zones[0],new Coord(Direction.of(Direction.SOUTH),new Point(4,1)),null,"Looks like a shop");
 		Key blueKey = new Key(null, "blue");
 		blueKey.onPickUp();
 		shop1.addInteraction(new BuyItem(shop1, blueKey, "blue key", 7));
 		shop1.setDrawImagePath("images/shopKeeper");
 		zones[0].addEntity(shop1);
-		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(new Direction(Direction.EAST),new Point(3,6)), "blue"));
-		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(new Direction(Direction.EAST),new Point(5,6)), "blue"));
-		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(new Direction(Direction.NORTH),new Point(4,9)), "red"));
-		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(new Direction(Direction.EAST),new Point(8,2)), "orange"));
-		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(new Direction(Direction.EAST),new Point(9,2)), "green"));
-		zones[0].addEntity(new Portal(zones[0], new Coord(new Direction(Direction.NORTH),new Point(6,10)), "1"));
-		zones[0].addEntity(new Portal(zones[0], new Coord(new Direction(Direction.NORTH),new Point(1,10)), "2"));
-		zones[0].addEntity(new Portal(zones[0], new Coord(new Direction(Direction.NORTH),new Point(10,6)), "4"));
-		zones[0].addEntity(new Portal(zones[0], new Coord(new Direction(Direction.NORTH),new Point(11,2)), "5"));
-		zones[0].addEntity(new Portal(zones[0], new Coord(new Direction(Direction.NORTH),new Point(9,10)), "6"));
-		Furniture totem1 = new Furniture(zones[0],new Coord(new Direction(Direction.NORTH),new Point(6,1)),null,"Some sort of totem, nothing inside");
+		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(Direction.of(Direction.EAST),new Point(3,6)), "blue"));
+		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(Direction.of(Direction.EAST),new Point(5,6)), "blue"));
+		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(Direction.of(Direction.NORTH),new Point(4,9)), "red"));
+		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(Direction.of(Direction.EAST),new Point(8,2)), "orange"));
+		zones[0].addEntity(new KeyGate(Gate.State.LOCKED, zones[0], new Coord(Direction.of(Direction.EAST),new Point(9,2)), "green"));
+		zones[0].addEntity(new Portal(zones[0], new Coord(Direction.of(Direction.NORTH),new Point(6,10)), "1"));
+		zones[0].addEntity(new Portal(zones[0], new Coord(Direction.of(Direction.NORTH),new Point(1,10)), "2"));
+		zones[0].addEntity(new Portal(zones[0], new Coord(Direction.of(Direction.NORTH),new Point(10,6)), "4"));
+		zones[0].addEntity(new Portal(zones[0], new Coord(Direction.of(Direction.NORTH),new Point(11,2)), "5"));
+		zones[0].addEntity(new Portal(zones[0], new Coord(Direction.of(Direction.NORTH),new Point(9,10)), "6"));
+		Furniture totem1 = new Furniture(zones[0],new Coord(Direction.of(Direction.NORTH),new Point(6,1)),null,"Some sort of totem, nothing inside");
 		totem1.setDrawImagePath("images/totem");
-		Furniture totem2 = new Furniture(zones[0],new Coord(new Direction(Direction.NORTH),new Point(8,3)),null,"Some sort of totem, nothing inside");
+		Furniture totem2 = new Furniture(zones[0],new Coord(Direction.of(Direction.NORTH),new Point(8,3)),null,"Some sort of totem, nothing inside");
 		totem2.setDrawImagePath("images/totem");
-		Furniture totemWithItem = new Furniture(zones[0],new Coord(new Direction(Direction.NORTH),new Point(8,1)),null,"Shouldnt be here");
+		Furniture totemWithItem = new Furniture(zones[0],new Coord(Direction.of(Direction.NORTH),new Point(8,1)),null,"Shouldnt be here");
 		totemWithItem.removeInteraction(totemWithItem.getInteractions()[0]);
 		Key redKey = new Key(null, "red");
 		redKey.onPickUp();
@@ -367,15 +443,15 @@ public class World implements Storable {
 		zones[1].addItem(new Coin(new Point(1,1)));
 		zones[1].addItem(new Coin(new Point(5,5)));
 		zones[1].addItem(new Key(new Point(1,5), "blue"));
-		Furniture shop2 = new Furniture(zones[1],new Coord(new Direction(Direction.SOUTH),new Point(5,1)),null,"Looks like a shop");
+		Furniture shop2 = new Furniture(zones[1],new Coord(Direction.of(Direction.SOUTH),new Point(5,1)),null,"Looks like a shop");
 		Key yellowKey = new Key(null, "yellow");
 		yellowKey.onPickUp();
 		shop2.addInteraction(new BuyItem(shop2, yellowKey, "yellow key", 8));
 		shop2.setDrawImagePath("images/shopKeeper");
 		zones[1].addEntity(shop2);
-		zones[1].addEntity(new KeyGate(Gate.State.LOCKED, zones[1], new Coord(new Direction(Direction.EAST),new Point(6,3)), "yellow"));
-		zones[1].addEntity(new Portal(zones[1], new Coord(new Direction(Direction.NORTH),new Point(3,3)), "2"));
-		zones[1].addEntity(new Portal(zones[1], new Coord(new Direction(Direction.NORTH),new Point(8,3)), "4"));
+		zones[1].addEntity(new KeyGate(Gate.State.LOCKED, zones[1], new Coord(Direction.of(Direction.EAST),new Point(6,3)), "yellow"));
+		zones[1].addEntity(new Portal(zones[1], new Coord(Direction.of(Direction.NORTH),new Point(3,3)), "2"));
+		zones[1].addEntity(new Portal(zones[1], new Coord(Direction.of(Direction.NORTH),new Point(8,3)), "4"));
 		
 		//ZONE 2 / Bob Campbell
 		tiles = new Tile[7][12];
@@ -411,25 +487,25 @@ public class World implements Storable {
 		y=6;x=0;
 		toAdd=12;addWall(tiles,toAdd,x,y);x=x+toAdd;
 		zones[2] = new Zone("Bob Campbell", tiles);
-		Furniture sign1 = new Furniture(zones[2],new Coord(new Direction(Direction.NORTH),new Point(3,1)),null,"Most common number 1-1000 inclusive?");
+		Furniture sign1 = new Furniture(zones[2],new Coord(Direction.of(Direction.NORTH),new Point(3,1)),null,"Most common number 1-1000 inclusive?");
 		sign1.setDrawImagePath("images/sign");
 		zones[2].addEntity(sign1);
-		Furniture sign2 = new Furniture(zones[2],new Coord(new Direction(Direction.EAST),new Point(7,2)),null,"1 or 2");
+		Furniture sign2 = new Furniture(zones[2],new Coord(Direction.of(Direction.EAST),new Point(7,2)),null,"1 or 2");
 		sign2.setDrawImagePath("images/sign");
 		zones[2].addEntity(sign2);
-		Furniture sign3 = new Furniture(zones[2],new Coord(new Direction(Direction.EAST),new Point(7,4)),null,"2 or 3");
+		Furniture sign3 = new Furniture(zones[2],new Coord(Direction.of(Direction.EAST),new Point(7,4)),null,"2 or 3");
 		sign3.setDrawImagePath("images/sign");
 		zones[2].addEntity(sign3);
 		zones[2].addItem(new Key(new Point(4,1), "purple"));
-		zones[2].addEntity(new KeyGate(Gate.State.LOCKED, zones[2], new Coord(new Direction(Direction.EAST),new Point(8,1)), "purple"));
-		zones[2].addEntity(new KeyGate(Gate.State.LOCKED, zones[2], new Coord(new Direction(Direction.EAST),new Point(8,3)), "purple"));
-		zones[2].addEntity(new KeyGate(Gate.State.LOCKED, zones[2], new Coord(new Direction(Direction.EAST),new Point(8,5)), "purple"));
-		zones[2].addEntity(new Portal(zones[2], new Coord(new Direction(Direction.NORTH),new Point(1,1)), "1"));
-		zones[2].addEntity(new Portal(zones[2], new Coord(new Direction(Direction.NORTH),new Point(10,1)), "3"));
-		Furniture fakePortal1 = new Furniture(zones[2],new Coord(new Direction(Direction.NORTH),new Point(10,3)),null,"Dammit this portal's a fake");
+		zones[2].addEntity(new KeyGate(Gate.State.LOCKED, zones[2], new Coord(Direction.of(Direction.EAST),new Point(8,1)), "purple"));
+		zones[2].addEntity(new KeyGate(Gate.State.LOCKED, zones[2], new Coord(Direction.of(Direction.EAST),new Point(8,3)), "purple"));
+		zones[2].addEntity(new KeyGate(Gate.State.LOCKED, zones[2], new Coord(Direction.of(Direction.EAST),new Point(8,5)), "purple"));
+		zones[2].addEntity(new Portal(zones[2], new Coord(Direction.of(Direction.NORTH),new Point(1,1)), "1"));
+		zones[2].addEntity(new Portal(zones[2], new Coord(Direction.of(Direction.NORTH),new Point(10,1)), "3"));
+		Furniture fakePortal1 = new Furniture(zones[2],new Coord(Direction.of(Direction.NORTH),new Point(10,3)),null,"Dammit this portal's a fake");
 		fakePortal1.setDrawImagePath("images/portal");
 		zones[2].addEntity(fakePortal1);
-		Furniture fakePortal2 = new Furniture(zones[2],new Coord(new Direction(Direction.NORTH),new Point(10,5)),null,"Dammit this portal's a fake");
+		Furniture fakePortal2 = new Furniture(zones[2],new Coord(Direction.of(Direction.NORTH),new Point(10,5)),null,"Dammit this portal's a fake");
 		fakePortal2.setDrawImagePath("images/portal");
 		zones[2].addEntity(fakePortal2);
 		
@@ -520,35 +596,35 @@ public class World implements Storable {
 		y=15;x=0;
 		toAdd=14;addWall(tiles,toAdd,x,y);x=x+toAdd;
 		zones[3] = new Zone("Familiarity", tiles);
-		Furniture totem3 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(7,1)),null,"Some sort of totem, nothing inside");
+		Furniture totem3 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(7,1)),null,"Some sort of totem, nothing inside");
 		totem3.setDrawImagePath("images/totem");
-		Furniture totem4 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(8,2)),null,"Some sort of totem, nothing inside");
+		Furniture totem4 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(8,2)),null,"Some sort of totem, nothing inside");
 		totem4.setDrawImagePath("images/totem");
-		Furniture totem5 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(5,2)),null,"Some sort of totem, nothing inside");
+		Furniture totem5 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(5,2)),null,"Some sort of totem, nothing inside");
 		totem5.setDrawImagePath("images/totem");
-		Furniture totem6 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(1,5)),null,"Some sort of totem, nothing inside");
+		Furniture totem6 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(1,5)),null,"Some sort of totem, nothing inside");
 		totem6.setDrawImagePath("images/totem");
-		Furniture totem7 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(1,7)),null,"Some sort of totem, nothing inside");
+		Furniture totem7 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(1,7)),null,"Some sort of totem, nothing inside");
 		totem7.setDrawImagePath("images/totem");
-		Furniture totem8 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(2,7)),null,"Some sort of totem, nothing inside");
+		Furniture totem8 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(2,7)),null,"Some sort of totem, nothing inside");
 		totem8.setDrawImagePath("images/totem");
-		Furniture totem9 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(10,5)),null,"Some sort of totem, nothing inside");
+		Furniture totem9 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(10,5)),null,"Some sort of totem, nothing inside");
 		totem9.setDrawImagePath("images/totem");
-		Furniture totem10 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(12,5)),null,"Some sort of totem, nothing inside");
+		Furniture totem10 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(12,5)),null,"Some sort of totem, nothing inside");
 		totem10.setDrawImagePath("images/totem");
-		Furniture totem11 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(12,7)),null,"Some sort of totem, nothing inside");
+		Furniture totem11 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(12,7)),null,"Some sort of totem, nothing inside");
 		totem11.setDrawImagePath("images/totem");
-		Furniture totem12 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(5,10)),null,"Some sort of totem, nothing inside");
+		Furniture totem12 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(5,10)),null,"Some sort of totem, nothing inside");
 		totem12.setDrawImagePath("images/totem");
-		Furniture totem13 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(5,12)),null,"Some sort of totem, nothing inside");
+		Furniture totem13 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(5,12)),null,"Some sort of totem, nothing inside");
 		totem13.setDrawImagePath("images/totem");
-		Furniture totem14 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(5,14)),null,"Some sort of totem, nothing inside");
+		Furniture totem14 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(5,14)),null,"Some sort of totem, nothing inside");
 		totem14.setDrawImagePath("images/totem");
-		Furniture fakePortal3 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(6,1)),null,"Dammit this portal's a fake");
+		Furniture fakePortal3 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(6,1)),null,"Dammit this portal's a fake");
 		fakePortal3.setDrawImagePath("images/portal");
-		Furniture fakePortal4 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(2,5)),null,"Dammit this portal's a fake");
+		Furniture fakePortal4 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(2,5)),null,"Dammit this portal's a fake");
 		fakePortal4.setDrawImagePath("images/portal");
-		Furniture fakePortal5 = new Furniture(zones[3],new Coord(new Direction(Direction.NORTH),new Point(7,10)),null,"Dammit this portal's a fake");
+		Furniture fakePortal5 = new Furniture(zones[3],new Coord(Direction.of(Direction.NORTH),new Point(7,10)),null,"Dammit this portal's a fake");
 		fakePortal5.setDrawImagePath("images/portal");
 		zones[3].addEntity(totem3);
 		zones[3].addEntity(totem4);
@@ -566,12 +642,12 @@ public class World implements Storable {
 		zones[3].addEntity(fakePortal4);
 		zones[3].addEntity(fakePortal5);
 		zones[3].addItem(new Key(new Point(8,8), "purple"));
-		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(new Direction(Direction.NORTH),new Point(6,3)), "purple"));
-		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(new Direction(Direction.EAST),new Point(3,6)), "purple"));
-		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(new Direction(Direction.EAST),new Point(9,6)), "purple"));
-		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(new Direction(Direction.NORTH),new Point(6,9)), "purple"));
-		zones[3].addEntity(new Portal(zones[3], new Coord(new Direction(Direction.NORTH),new Point(6,6)), "3"));
-		zones[3].addEntity(new Portal(zones[3], new Coord(new Direction(Direction.NORTH),new Point(10,7)), "5"));
+		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(Direction.of(Direction.NORTH),new Point(6,3)), "purple"));
+		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(Direction.of(Direction.EAST),new Point(3,6)), "purple"));
+		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(Direction.of(Direction.EAST),new Point(9,6)), "purple"));
+		zones[3].addEntity(new KeyGate(Gate.State.LOCKED, zones[3], new Coord(Direction.of(Direction.NORTH),new Point(6,9)), "purple"));
+		zones[3].addEntity(new Portal(zones[3], new Coord(Direction.of(Direction.NORTH),new Point(6,6)), "3"));
+		zones[3].addEntity(new Portal(zones[3], new Coord(Direction.of(Direction.NORTH),new Point(10,7)), "5"));
 		
 		//ZONE 4 / FightClub
 		tiles = new Tile[8][7];
@@ -612,16 +688,16 @@ public class World implements Storable {
 		y=7;x=0;
 		toAdd=7;addWall(tiles,toAdd,x,y);x=x+toAdd;
 		zones[4] = new Zone("Fight Club", tiles);
-		zones[4].addEntity(new Portal(zones[4], new Coord(new Direction(Direction.NORTH),new Point(3,6)), "6"));
+		zones[4].addEntity(new Portal(zones[4], new Coord(Direction.of(Direction.NORTH),new Point(3,6)), "6"));
 		//Slime 
-		Slime slime1 = new Slime(zones[4], new Coord(new Direction(Direction.SOUTH),new Point(3,3)));
+		Slime slime1 = new Slime(zones[4], new Coord(Direction.of(Direction.SOUTH),new Point(3,3)));
 		zones[4].addCharacter(slime1);
 		//Sword
 		zones[4].addItem(new Sword(new Point(5,5)));
 		
 		//characters
-		Player pupo = new Player(zones[0], new Coord(new Direction(Direction.EAST), new Point(1,1)), true);
-		Player yelo = new Player(zones[0], new Coord(new Direction(Direction.SOUTH),new Point(8,5)), false);
+		Player pupo = new Player(zones[0], new Coord(Direction.of(Direction.EAST), new Point(1,1)), true);
+		Player yelo = new Player(zones[0], new Coord(Direction.of(Direction.SOUTH),new Point(8,5)), false);
 		zones[0].addCharacter(pupo);
 		zones[0].addCharacter(yelo);
 		return new World("Demonstration Level", zones, pupo, yelo);
@@ -653,11 +729,7 @@ public class World implements Storable {
 		}
 	}
 	public Zone getZoneByID(long id) {
-		for (Zone z : getZones()) {
-			if (z.getID() == id)
-				return z;
-		}
-		return null;
+		return zonesByID.get(id);
 	}
 
 }
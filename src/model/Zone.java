@@ -11,8 +11,9 @@ import org.w3c.dom.NodeList;
 import datastorage.Storable;
 import datastorage.StorableFactory;
 import model.Tile.TileFactory;
-import util.Coord;
 import util.Direction;
+import util.LongMap;
+import util.TimerWheel;
 
 /**
  * A zone is a discrete section of the world.
@@ -28,11 +29,72 @@ public class Zone implements Storable, Serializable {
 	private long id;
 
 	private String name;
-	private Tile[][] tiles;
+	private int width;
+	private int height;
+	// The type of each tile, row by row
+	private byte[] tileTypes;
 	private List<Item> items;
 	private List<Entity> entities;
 	private List<Character> characters;
 
+	// Bumped whenever something a client can see changes
+	private transient long version;
+	// Bumped whenever a tile is replaced
+	private transient long tileVersion;
+
+	/**
+	 * Whether or not a zone is being ticked. Zones with nobody in
+	 * them doing anything are dormant, and skipped when the world
+	 * ticks. A dormant zone which a player enters is waking until
+	 * its next tick, when it catches up on the ticks it missed.
+	 */
+	public enum Activity {
+		ACTIVE, DORMANT, WAKING
+	}
+
+	private Activity activity = Activity.ACTIVE;
+	// The last world tick this zone was ticked on
+	private long lastTick;
+	// The latest world tick, which dormant zones are told about too
+	private transient long worldTick;
+	// How many players are here and how many characters are busy, kept up
+	// to date once counted so that a dormant zone stays dormant at a glance
+	private transient boolean counted;
+	private transient int players;
+	private transient int busy;
+
+	// What is on each tile, and what has each ID, built when first needed
+	private transient CellIndex<Character> characterCells;
+	private transient CellIndex<Entity> entityCells;
+	private transient CellIndex<Item> itemCells;
+	private transient LongMap<Character> charactersByID;
+	private transient LongMap<Entity> entitiesByID;
+	private transient LongMap<Item> itemsByID;
+	// Positions, health and so on of the characters, for going through them quickly
+	private transient CharacterStore characterStore;
+
+	// One bit per tile, set where the tile is obstructed, kept up to
+	// date as things change so that checking a tile is a single read
+	private transient long[] blocked;
+	// Like blocked, but only counting tiles and entities, not characters
+	private transient long[] solid;
+	// Bumped whenever a tile becomes obstructed or unobstructed
+	private transient long collisionVersion;
+	// Bumped whenever a tile becomes solid or stops being solid
+	private transient long terrainVersion;
+	// Distances to the tiles characters are heading for, built when first needed
+	private transient FlowFields flowFields;
+	// Plans routes through this zone's world, set by the world
+	private transient PortalGraph portalGraph;
+	private transient EnemyAI enemyAI;
+	// Characters and events waiting for the tick they're due on
+	private transient TimerWheel<Object> wakeups;
+
+	// Set while zones are being ticked in parallel, when changes that
+	// reach into other zones are put off until every zone has ticked
+	private transient boolean tickingInParallel;
+	private transient List<Runnable> deferred;
+
 	/**
 	 * Zones should usually only be constructed from
 	 * appropriate XML objects.
@@ -42,7 +104,7 @@ public class Zone implements Storable, Serializable {
 	 */
 	public Zone(String name, Tile[][] tiles){
 		this.name = name;
-		this.tiles = tiles;
+		setTiles(tiles);
 
 		items = new ArrayList<Item>();
 		entities = new ArrayList<Entity>();
@@ -58,7 +120,7 @@ public class Zone implements Storable, Serializable {
 	 */
 	private Zone(String name, Tile[][] tiles, long id){
 		this.name = name;
-		this.tiles = tiles;
+		setTiles(tiles);
 
 		items = new ArrayList<Item>();
 		entities = new ArrayList<Entity>();
@@ -75,16 +137,16 @@ public class Zone implements Storable, Serializable {
 		zones[0] = this;
 		this.id = Long.parseLong(elem.getAttribute("ID"));
 		this.name = elem.getAttribute("name");
-		int width = Integer.parseInt(elem.getAttribute("width"));
-		int height = Integer.parseInt(elem.getAttribute("height"));
-		this.tiles = new Tile[height][width];
+		this.width = Integer.parseInt(elem.getAttribute("width"));
+		this.height = Integer.parseInt(elem.getAttribute("height"));
+		this.tileTypes = new byte[width*height];
 		TileFactory factory = new TileFactory();
 		int i = 0;
 		NodeList children = elem.getChildNodes();
 		for(; i < width*height; i++){
 			int x = Integer.parseInt(((Element)children.item(i)).getAttribute("xpos"));
 			int y = Integer.parseInt(((Element)children.item(i)).getAttribute("ypos"));
-			tiles[y][x] = factory.fromXMLElement((Element)children.item(i));
+			tileTypes[y*width + x] = factory.fromXMLElement((Element)children.item(i)).getType().getID();
 		}
 		int noItems = Integer.parseInt(elem.getAttribute("noItems")) + i;
 		this.items = new ArrayList<Item>();
@@ -110,12 +172,23 @@ public class Zone implements Storable, Serializable {
 
 	}
 	
+	private void setTiles(Tile[][] tiles){
+		this.width = tiles[0].length;
+		this.height = tiles.length;
+		this.tileTypes = new byte[width*height];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				tileTypes[y*width + x] = tiles[y][x].getType().getID();
+			}
+		}
+	}
+
 	public int getWidth(){
-		return tiles[0].length;
+		return width;
 	}
 	
 	public int getHeight(){
-		return tiles.length;
+		return height;
 	}
 	
 	/**
@@ -139,97 +212,62 @@ public class Zone implements Storable, Serializable {
 	 * @return The series of directions to get from the start to the end, or null if none exists.
 	 */
 	public Direction[] getPath(Point start, Point end){
-		// A* used here; simple and effective (and, helpfully, learned in COMP261)
-		Set<Point> visited = new HashSet<Point>();
-		Queue<NodeData> fringe = new PriorityQueue<NodeData>();
-		
-		NodeData first = new NodeData(0, Coord.getDistance(start, end), null, start);
-		fringe.add(first);
-		
-		while(!fringe.isEmpty()){
-			NodeData current = fringe.poll();
-			
-			if(current.point.equals(end))
-				return constructPath(current);
-			
-			visited.add(current.point);
-			
-			List<Point> neighbours = new ArrayList<Point>();
-			neighbours.add(new Point(current.point.x + 1, current.point.y));
-			neighbours.add(new Point(current.point.x - 1, current.point.y));
-			neighbours.add(new Point(current.point.x, current.point.y + 1));
-			neighbours.add(new Point(current.point.x, current.point.y - 1));
-			for(Point p : neighbours){
-				if(visited.contains(p))
-					continue; // already visited, can't be a better path
-				
-				try{
-					if(!checkForObstruction(p)){ // can we move onto the point?
-						NodeData inFringe = null;
-						for(NodeData n : fringe){
-							if(n.point.equals(p)){ inFringe = n; break; }
-						}
-						
-						if(inFringe == null){ // auto add it if we haven't seen it yet
-							fringe.add(new NodeData(current.costSoFar + 1,
-													Coord.getDistance(p, end),
-													current, p));
-						}
-						else if(current.costSoFar + 1 >= inFringe.costSoFar){ // This path to it is longer
-							continue;
-						}
-						else { // This path to it is shorter, override it
-							fringe.remove(inFringe);
-							inFringe.costSoFar = current.costSoFar + 1;
-							inFringe.previous = current;
-							fringe.add(inFringe);
-						}
-					}
-				}
-				catch(IllegalArgumentException e){ // out of bounds; ignore this neighbour
-					continue;
-				}
-			}
-		}
-		
-		return null; // We can't find a path at all!
+		// A* over tile indices, reusing this thread's scratch arrays
+		return PathFinder.forThread().find(this, start, end);
 	}
-	
-	private Direction[] constructPath(NodeData node){
-		List<NodeData> list = new LinkedList<NodeData>();
-		while(node != null){
-			list.add(0, node);
-			node = node.previous;
-		}
-		
-		List<Direction> directions = new LinkedList<Direction>();
-		for(int i = 1; i < list.size(); i++){
-			directions.add(Direction.directionFrom(list.get(i-1).point, list.get(i).point));
-		}
-		
-		return directions.toArray(new Direction[0]);
+
+	/**
+	 * Like getPath, but gives the path as the index (y*width + x)
+	 * of each tile to move onto in turn.
+	 *
+	 * @return The tiles to move onto, or null if there is no path.
+	 */
+	int[] getTilePath(Point start, Point end){
+		return PathFinder.forThread().findTiles(this, start, end);
 	}
-	
+
 	/**
-	 * A collection of data used for A* search.
-	 * 
-	 * @author Robert Campbell
+	 * Picks which way to move to get one step closer to a target.
+	 * Characters heading for the same target share the work of
+	 * finding the way there, so this is cheap to call for many
+	 * characters at once. The way is found through tiles and
+	 * entities alone, and steps onto other characters are avoided.
+	 *
+	 * @param from The point to move from.
+	 * @param target The point to head for.
+	 * @return The direction to move in, or null if there's no unobstructed step closer to the target.
 	 */
-	private class NodeData implements Comparable<NodeData> {
-		public int costSoFar;
-		public double heuristicCost;
-		public Point point;
-		public NodeData previous;
-		
-		public NodeData(int costSoFar, double heuristicCost, NodeData previous, Point point){
-			this.costSoFar = costSoFar; this.heuristicCost = heuristicCost; this.previous = previous; this.point = point;
-		}
-		
-		@Override
-		public int compareTo(NodeData other) {
-			double comparison = (costSoFar+heuristicCost) - (other.costSoFar+other.heuristicCost);
-			return comparison < 0 ? -1 : comparison > 0 ? 1 : 0;
-		}
+	public Direction getStepToward(Point from, Point target){
+		return getFlowFields().step(from, target);
+	}
+
+	/**
+	 * Works out how many steps it takes to get from one point to
+	 * another, going around tiles and entities but not characters.
+	 *
+	 * @param from The point to start at.
+	 * @param target The point to end at.
+	 * @return The number of steps, or -1 if the target can't be reached.
+	 */
+	public int getDistanceTo(Point from, Point target){
+		return getFlowFields().distance(from, target);
+	}
+
+	private FlowFields getFlowFields(){
+		if(flowFields == null)
+			flowFields = new FlowFields(this);
+		return flowFields;
+	}
+
+	/**
+	 * @return The planner for routes between the zones of this zone's world, or null if it isn't in one.
+	 */
+	PortalGraph getPortalGraph(){
+		return portalGraph;
+	}
+
+	void setPortalGraph(PortalGraph portalGraph){
+		this.portalGraph = portalGraph;
 	}
 
 	/**
@@ -238,29 +276,112 @@ public class Zone implements Storable, Serializable {
 	 * @return True if obstacle exists, false otherwise
 	 */
 	public boolean checkForObstruction(Point point){
-		try{
-			if(getTile(point).collides()){
-				return true;
-			}
-		}
-		catch(IllegalArgumentException e){
-			return true; // Out of bounds
-		}
-		Entity entity = this.getEntity(point);
-		boolean isPassable = true;
-		if(entity != null) isPassable = entity.isPassable();
-		if(!isPassable) {
+		return isBlocked(point.x, point.y);
+	}
+
+	/**
+	 * Checks if a tile in this zone is obstructed by characters, objects
+	 * or the tile itself. Tiles outside the zone count as obstructed.
+	 *
+	 * @param x The x coordinate of the tile.
+	 * @param y The y coordinate of the tile.
+	 * @return True if the tile is obstructed, false otherwise.
+	 */
+	public boolean isBlocked(int x, int y){
+		if(x < 0 || y < 0 || x >= width || y >= height)
+			return true;
+		buildIndex();
+		int cell = y*width + x;
+		return (blocked[cell >> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * @return A number which changes whenever any tile in this zone becomes obstructed or unobstructed.
+	 */
+	public long getCollisionVersion(){
+		return collisionVersion;
+	}
+
+	/**
+	 * Checks if a tile in this zone is obstructed by objects or the
+	 * tile itself, ignoring characters, which come and go. Tiles
+	 * outside the zone count as solid.
+	 *
+	 * @param x The x coordinate of the tile.
+	 * @param y The y coordinate of the tile.
+	 * @return True if the tile is solid, false otherwise.
+	 */
+	public boolean isSolid(int x, int y){
+		if(x < 0 || y < 0 || x >= width || y >= height)
+			return true;
+		buildIndex();
+		int cell = y*width + x;
+		return (solid[cell >> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * @return A number which changes whenever any tile in this zone becomes solid or stops being solid.
+	 */
+	public long getTerrainVersion(){
+		return terrainVersion;
+	}
+
+	/**
+	 * Works out from scratch whether a tile is obstructed by
+	 * the tile itself or an entity on it.
+	 */
+	private boolean computeSolid(int x, int y){
+		if(TileType.fromID(tileTypes[y*width + x]).collides())
 			return true;
+		List<Entity> here = entityCells.at(x, y);
+		for(int i = 0; i < here.size(); i++){
+			if(!here.get(i).isPassable())
+				return true;
 		}
-		for(Character c: getCharacters()){
-			if(c.getCoord().getPoint().equals(point)){
-				System.out.println(c);
+		return false;
+	}
+
+	/**
+	 * Works out from scratch whether a living character is on a tile.
+	 */
+	private boolean computeOccupied(int x, int y){
+		List<Character> here = characterCells.at(x, y);
+		for(int i = 0; i < here.size(); i++){
+			Character c = here.get(i);
+			if(!(c instanceof Enemy && ((Enemy)c).isDead()))
 				return true;
-			}
 		}
 		return false;
 	}
 
+	/**
+	 * Brings the obstruction bit of a tile up to date after something
+	 * on it has changed. Does nothing for points outside the zone.
+	 */
+	private void refreshCollision(Point point){
+		if(point != null)
+			refreshCollision(point.x, point.y);
+	}
+
+	private void refreshCollision(int x, int y){
+		if(blocked == null || x < 0 || y < 0 || x >= width || y >= height)
+			return;
+		int cell = y*width + x;
+		long bit = 1L << cell;
+		boolean wasSolid = (solid[cell >> 6] & bit) != 0;
+		boolean isSolid = computeSolid(x, y);
+		if(wasSolid != isSolid){
+			solid[cell >> 6] ^= bit;
+			terrainVersion++;
+		}
+		boolean was = (blocked[cell >> 6] & bit) != 0;
+		boolean is = isSolid || computeOccupied(x, y);
+		if(was != is){
+			blocked[cell >> 6] ^= bit;
+			collisionVersion++;
+		}
+	}
+
 	/**
 	 * Checks a specific point in this zone for an interactable.
 	 * Will not return anything if the player is not next to the interactable
@@ -282,15 +403,7 @@ public class Zone implements Storable, Serializable {
 		if(nextTo == false) {
 			return null;
 		}
-		Entity matchEntity = null;
-		//check all entities for correct position
-		for(Entity e: entities){
-			if(e.getWorldPosition().getPoint().equals(point)){
-				matchEntity = e;
-			}
-		}
-
-		return matchEntity == null ? null : matchEntity;
+		return getEntity(point);
 	}
 
 	/**
@@ -300,6 +413,33 @@ public class Zone implements Storable, Serializable {
 		return id;
 	}
 
+	/**
+	 * Returns a number which changes whenever anything in this
+	 * zone that could be drawn changes, including the inventories
+	 * of players in it. If two calls return the same number,
+	 * the zone hasn't changed in between.
+	 *
+	 * @return The current version of this zone.
+	 */
+	public long getVersion(){
+		return version;
+	}
+
+	/**
+	 * @return A number which changes whenever a tile in this zone is replaced.
+	 */
+	long getTileVersion(){
+		return tileVersion;
+	}
+
+	/**
+	 * Notes that something in this zone has changed. Anything
+	 * which changes state that a client can see should call this.
+	 */
+	void changed(){
+		version++;
+	}
+
 	/**
 	 * @return A list of all entities contained within this zone.
 	 */
@@ -312,10 +452,21 @@ public class Zone implements Storable, Serializable {
 	 */
 	public List<Character> getCharacters(){
 		// Remove dead enemies
-		for(Character c : characters){
+		Iterator<Character> it = characters.iterator();
+		while(it.hasNext()){
+			Character c = it.next();
 			if(c instanceof Enemy){
-				if(((Enemy)c).isDead())
-					characters.remove(c);
+				if(((Enemy)c).isDead()){
+					it.remove();
+					countOut(c);
+					if(characterCells != null){
+						characterCells.remove(c, c.getCoord().getPoint());
+						charactersByID.remove(c.getID());
+						characterStore.remove(c);
+						refreshCollision(c.getCoord().getPoint());
+					}
+					changed();
+				}
 			}
 		}
 		
@@ -330,6 +481,20 @@ public class Zone implements Storable, Serializable {
 	 */
 	public void addCharacter(Character c){
 		characters.add(c);
+		countIn(c);
+		if(characterCells != null){
+			characterCells.add(c, c.getCoord().getPoint());
+			charactersByID.put(c.getID(), c);
+			characterStore.add(c);
+			refreshCollision(c.getCoord().getPoint());
+		}
+		if(c instanceof Player && activity == Activity.DORMANT)
+			activity = Activity.WAKING;
+		// Anything it was waiting for was in its old zone's time
+		c.setWakeTick(0);
+		if(c.isBusy())
+			wake(c, 1);
+		changed();
 	}
 
 	/**
@@ -340,7 +505,16 @@ public class Zone implements Storable, Serializable {
 	 * @param c The character to remove.
 	 */
 	public void removeCharacter(Character c){
-		characters.remove(c);
+		if(characters.remove(c)){
+			countOut(c);
+			if(characterCells != null){
+				characterCells.remove(c, c.getCoord().getPoint());
+				charactersByID.remove(c.getID());
+				characterStore.remove(c);
+				refreshCollision(c.getCoord().getPoint());
+			}
+			changed();
+		}
 	}
 
 	/**
@@ -351,12 +525,34 @@ public class Zone implements Storable, Serializable {
 	 * @throws IllegalArgumentException If the point is out of the bounds of this zone.
 	 */
 	public Tile getTile(Point point){
-		if(point.x >= tiles[0].length || point.x < 0)
+		return getTileType(point).createTile(new Point(point));
+	}
+
+	/**
+	 * Returns the type of the tile at the given point.
+	 *
+	 * @param point The point to get the tile type at.
+	 * @return The type of the tile at the given point.
+	 * @throws IllegalArgumentException If the point is out of the bounds of this zone.
+	 */
+	public TileType getTileType(Point point){
+		if(point.x >= width || point.x < 0)
 			throw new IllegalArgumentException("Trying to get a tile at an invalid X: " + point.getX());
-		if(point.y >= tiles.length || point.y < 0)
+		if(point.y >= height || point.y < 0)
 			throw new IllegalArgumentException("Trying to get a tile at an invalid Y: " + point.getY());
 
-		return tiles[point.y][point.x];
+		return TileType.fromID(tileTypes[point.y*width + point.x]);
+	}
+
+	/**
+	 * Returns the IDs of the types of every tile in this zone, row
+	 * by row, for code which needs to go through all of them
+	 * quickly. The array mustn't be modified.
+	 *
+	 * @return The tile type IDs; the tile at (x, y) is at y*getWidth() + x.
+	 */
+	public byte[] getTileTypeIDs(){
+		return tileTypes;
 	}
 	
 	/**
@@ -369,12 +565,15 @@ public class Zone implements Storable, Serializable {
 	 * @param tile The tile to set the point to.
 	 */
 	public void setTile(Point point, Tile tile){
-		if(point.x >= tiles[0].length || point.x < 0)
+		if(point.x >= width || point.x < 0)
 			throw new IllegalArgumentException("Trying to set a tile at an invalid X: " + point.getX());
-		if(point.y >= tiles.length || point.y < 0)
+		if(point.y >= height || point.y < 0)
 			throw new IllegalArgumentException("Trying to set a tile at an invalid Y: " + point.getY());
 		
-		tiles[point.y][point.x] = tile;
+		tileTypes[point.y*width + point.x] = tile.getType().getID();
+		tileVersion++;
+		refreshCollision(point);
+		changed();
 	}
 
 	/**
@@ -387,13 +586,8 @@ public class Zone implements Storable, Serializable {
 	 * @return A character that was at the point, or null if there was none.
 	 */
 	public Character getCharacter(Point point){
-		for(Character c : characters){
-			int x = c.getCoord().getPoint().x;
-			int y = c.getCoord().getPoint().y;
-			if(x == point.x && y == point.y)
-				return c;
-		}
-		return null;
+		buildIndex();
+		return characterCells.first(point);
 	}
 	
 	/**
@@ -406,10 +600,9 @@ public class Zone implements Storable, Serializable {
 	 * @return An enemy that was at the point, or null if there was none.
 	 */
 	public Enemy getEnemy(Point point){
-		for(Character c : getCharacters()){
-			if(c instanceof Enemy &&
-					c.getCoord().getPoint().x == point.x &&
-					c.getCoord().getPoint().y == point.y){
+		buildIndex();
+		for(Character c : characterCells.at(point)){
+			if(c instanceof Enemy && !((Enemy)c).isDead()){
 				return (Enemy)c;
 			}
 		}
@@ -426,13 +619,8 @@ public class Zone implements Storable, Serializable {
 	 * @return An entity that was at the point, or null if there was none.
 	 */
 	public Entity getEntity(Point point){
-		for(Entity e : entities){
-			int x = e.getWorldPosition().getPoint().x;
-			int y = e.getWorldPosition().getPoint().y;
-			if(x == point.x && y == point.y)
-				return e;
-		}
-		return null;
+		buildIndex();
+		return entityCells.first(point);
 	}
 
 	/**
@@ -445,15 +633,8 @@ public class Zone implements Storable, Serializable {
 	 * @return An item that was at the point, or null if there was none.
 	 */
 	public Item getItem(Point point){
-		for(Item i : items){
-			if(i.inInventory()) continue;
-
-			int x = i.getPosition().x;
-			int y = i.getPosition().y;
-			if(x == point.x && y == point.y)
-				return i;
-		}
-		return null;
+		buildIndex();
+		return itemCells.first(point);
 	}
 
 	/**
@@ -465,16 +646,160 @@ public class Zone implements Storable, Serializable {
 	 * @return All items that were at the point.
 	 */
 	public Item[] getItems(Point point){
-		List<Item> it = new LinkedList<Item>();
+		buildIndex();
+		return itemCells.at(point).toArray(new Item[0]);
+	}
+
+	/**
+	 * @return Whether or not any items are lying on the given tile.
+	 */
+	boolean hasItemsAt(int x, int y){
+		buildIndex();
+		return !itemCells.at(x, y).isEmpty();
+	}
+
+	/**
+	 * Builds the indices of what is on each tile and what has
+	 * each ID, and which tiles are obstructed, if they haven't been
+	 * built yet. Zones received over the network or loaded from XML
+	 * start without them.
+	 */
+	private void buildIndex(){
+		if(blocked != null) return;
+
+		charactersByID = new LongMap<Character>(characters.size());
+		characterStore = new CharacterStore(characters.size());
+		CellIndex<Character> cs = new CellIndex<Character>(getWidth(), getHeight());
+		for(Character c : characters){
+			cs.add(c, c.getCoord().getPoint());
+			charactersByID.put(c.getID(), c);
+			characterStore.add(c);
+		}
+		entitiesByID = new LongMap<Entity>(entities.size());
+		entityCells = new CellIndex<Entity>(getWidth(), getHeight());
+		for(Entity e : entities){
+			entityCells.add(e, e.getWorldPosition().getPoint());
+			entitiesByID.put(e.getID(), e);
+		}
+		itemsByID = new LongMap<Item>(items.size());
+		itemCells = new CellIndex<Item>(getWidth(), getHeight());
 		for(Item i : items){
-			if(i.inInventory()) continue;
+			i.setZone(this);
+			if(!i.inInventory())
+				itemCells.add(i, i.getPosition());
+			itemsByID.put(i.getID(), i);
+		}
+		characterCells = cs;
+
+		long[] solidBits = new long[(width*height + 63) >> 6];
+		long[] blockedBits = new long[solidBits.length];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				int cell = y*width + x;
+				if(computeSolid(x, y)){
+					solidBits[cell >> 6] |= 1L << cell;
+					blockedBits[cell >> 6] |= 1L << cell;
+				}
+				else if(computeOccupied(x, y)){
+					blockedBits[cell >> 6] |= 1L << cell;
+				}
+			}
+		}
+		solid = solidBits;
+		blocked = blockedBits;
+	}
+
+	/**
+	 * Notes that a character in this zone has moved.
+	 *
+	 * @param c The character that moved.
+	 * @param fromX The x coordinate it moved from.
+	 * @param fromY The y coordinate it moved from.
+	 */
+	void characterMoved(Character c, int fromX, int fromY){
+		if(characterCells != null){
+			characterCells.move(c, fromX, fromY, c.getX(), c.getY());
+			characterStore.update(c);
+			refreshCollision(fromX, fromY);
+			refreshCollision(c.getX(), c.getY());
+		}
+		changed();
+	}
+
+	/**
+	 * Notes that a character in this zone has changed in a way
+	 * which may affect whether it obstructs its tile, such as dying.
+	 *
+	 * @param c The character that changed.
+	 */
+	void characterChanged(Character c){
+		if(characterStore != null)
+			characterStore.update(c);
+		refreshCollision(c.getX(), c.getY());
+		changed();
+	}
+
+	/**
+	 * Notes that a character in this zone has changed in a way
+	 * which players can't see, such as an enemy deciding what to do.
+	 *
+	 * @param c The character that changed.
+	 */
+	void characterUpdated(Character c){
+		if(characterStore != null)
+			characterStore.update(c);
+	}
+
+	/**
+	 * @return The state of the characters in this zone, kept in parallel arrays.
+	 */
+	CharacterStore getCharacterStore(){
+		getCharacters(); // clears out dead enemies
+		buildIndex();
+		return characterStore;
+	}
+
+	/**
+	 * Notes that an entity in this zone has moved.
+	 *
+	 * @param e The entity that moved.
+	 * @param from Where it moved from.
+	 */
+	void entityMoved(Entity e, Point from){
+		if(entityCells != null){
+			entityCells.move(e, from, e.getWorldPosition().getPoint());
+			refreshCollision(from);
+			refreshCollision(e.getWorldPosition().getPoint());
+		}
+		changed();
+	}
+
+	/**
+	 * Notes that an entity in this zone has changed in a way
+	 * which may affect whether it can be passed, such as a gate
+	 * opening or closing.
+	 *
+	 * @param e The entity that changed.
+	 */
+	void entityChanged(Entity e){
+		refreshCollision(e.getWorldPosition().getPoint());
+		changed();
+	}
 
-			int x = i.getPosition().x;
-			int y = i.getPosition().y;
-			if(x == point.x && y == point.y)
-				it.add(i);
+	/**
+	 * Notes that an item in this zone has moved, been picked up or been dropped.
+	 *
+	 * @param i The item that moved.
+	 * @param from Where it was on the floor, or null if it was in an inventory.
+	 */
+	void itemMoved(Item i, Point from){
+		if(itemCells != null){
+			if(from != null)
+				itemCells.remove(i, from);
+			if(!i.inInventory())
+				itemCells.add(i, i.getPosition());
 		}
-		return it.toArray(new Item[0]);
+		changed();
 	}
 
 	@Override
@@ -493,6 +818,13 @@ public class Zone implements Storable, Serializable {
 	 */
 	public void addItem(Item i){
 		items.add(i);
+		i.setZone(this);
+		if(itemCells != null){
+			if(!i.inInventory())
+				itemCells.add(i, i.getPosition());
+			itemsByID.put(i.getID(), i);
+		}
+		changed();
 	}
 
 	/**
@@ -502,7 +834,16 @@ public class Zone implements Storable, Serializable {
 	 * @param i The item to be removed.
 	 */
 	public void removeItem(Item i){
-		items.remove(i);
+		if(items.remove(i)){
+			if(i.getZone() == this)
+				i.setZone(null);
+			if(itemCells != null){
+				if(!i.inInventory())
+					itemCells.remove(i, i.getPosition());
+				itemsByID.remove(i.getID());
+			}
+			changed();
+		}
 	}
 
 	/**
@@ -522,6 +863,12 @@ public class Zone implements Storable, Serializable {
 	 */
 	public void addEntity(Entity e){
 		entities.add(e);
+		if(entityCells != null){
+			entityCells.add(e, e.getWorldPosition().getPoint());
+			entitiesByID.put(e.getID(), e);
+			refreshCollision(e.getWorldPosition().getPoint());
+		}
+		changed();
 	}
 
 	/**
@@ -531,7 +878,14 @@ public class Zone implements Storable, Serializable {
 	 * @param e The entity to be removed.
 	 */
 	public void removeEntity(Entity e){
-		entities.remove(e);
+		if(entities.remove(e)){
+			if(entityCells != null){
+				entityCells.remove(e, e.getWorldPosition().getPoint());
+				entitiesByID.remove(e.getID());
+				refreshCollision(e.getWorldPosition().getPoint());
+			}
+			changed();
+		}
 	}
 	
 	/**
@@ -539,21 +893,243 @@ public class Zone implements Storable, Serializable {
 	 * in this world.
 	 */
 	public void tick(){
-		for(Character c : getCharacters()){
-			c.tick();
+		// Characters may be removed while ticking, eg. when killed
+		EnemyAI ai = getEnemyAI();
+		ai.think(getCharacterStore());
+
+		// Only what has asked to be woken on this tick has anything to do;
+		// a zone ticked directly rather than by its world ticks once
+		TimerWheel<Object> wheel = getWakeups();
+		wheel.advance(Math.max(wheel.now() + 1, lastTick), new TimerWheel.Handler<Object>(){
+			@Override
+			public void due(Object item, long tick){
+				if(item instanceof Character){
+					Character c = (Character)item;
+					// Characters which have left, or asked again for a later tick, wait
+					if(c.getZone() == Zone.this && c.getWakeTick() == tick){
+						c.tick();
+						if(c.getZone() == Zone.this)
+							recount(c);
+					}
+				}
+				else{
+					((Runnable)item).run();
+				}
+			}
+		});
+		ai.tickDone();
+	}
+
+	private TimerWheel<Object> getWakeups(){
+		if(wakeups == null)
+			wakeups = new TimerWheel<Object>();
+		return wakeups;
+	}
+
+	/**
+	 * Has this zone tick a character after the given number of ticks.
+	 * If the character is already due to be ticked sooner, it will be
+	 * ticked then instead.
+	 *
+	 * @param c The character to tick.
+	 * @param ticks How many ticks from now to tick it in; at least one.
+	 */
+	void wake(Character c, int ticks){
+		long now = clock();
+		long due = now + Math.max(ticks, 1);
+		long asked = c.getWakeTick();
+		if(asked > now && asked <= due)
+			return;
+		c.setWakeTick(due);
+		getWakeups().schedule(c, due);
+		recount(c);
+	}
+
+	/**
+	 * @return The tick it is now as far as waking things goes: the world's, or this zone's own if it is ticked directly.
+	 */
+	private long clock(){
+		return Math.max(getWakeups().now(), worldTick);
+	}
+
+	/**
+	 * Moves the wheel up to just before the given tick without
+	 * ticking anything, for a zone which has been dormant. Anything
+	 * which fell due while it slept is due on that tick instead,
+	 * once; characters catch up on the rest with catchUp.
+	 */
+	private void fastForward(final long tick){
+		getWakeups().advance(tick - 1, new TimerWheel.Handler<Object>(){
+			@Override
+			public void due(Object item, long due){
+				if(item instanceof Character){
+					Character c = (Character)item;
+					if(c.getZone() != Zone.this || c.getWakeTick() != due)
+						return;
+					c.setWakeTick(tick);
+				}
+				getWakeups().schedule(item, tick);
+			}
+		});
+	}
+
+	/**
+	 * Runs something as part of this zone's tick after the given number
+	 * of ticks, such as a gate closing behind someone or an enemy coming
+	 * back to life. It is run even if this zone is dormant in between,
+	 * as soon as it next ticks.
+	 *
+	 * @param ticks How many ticks from now to run it in; at least one.
+	 * @param event What to run.
+	 */
+	public void schedule(int ticks, Runnable event){
+		getWakeups().schedule(event, clock() + Math.max(ticks, 1));
+	}
+
+	/**
+	 * @return What decides what this zone's enemies do, and keeps track of how long its ticks take.
+	 */
+	public EnemyAI getEnemyAI(){
+		if(enemyAI == null)
+			enemyAI = new EnemyAI();
+		return enemyAI;
+	}
+
+	/**
+	 * @return Whether this zone is active, dormant or waking.
+	 */
+	public Activity getActivity(){
+		return activity;
+	}
+
+	/**
+	 * Decides whether or not this zone needs ticking on the given
+	 * world tick, putting it to sleep if nobody in it is doing
+	 * anything, and catching it up on any ticks it missed if it
+	 * is waking.
+	 *
+	 * @param tick The number of the world tick about to happen.
+	 * @return Whether or not this zone should be ticked.
+	 */
+	boolean prepareTick(long tick){
+		worldTick = tick - 1; // until this tick happens
+		countCharacters();
+		if(players == 0 && busy == 0){
+			activity = Activity.DORMANT;
+			return false;
+		}
+
+		if(activity != Activity.ACTIVE){
+			long missed = tick - 1 - lastTick;
+			if(missed > 0){
+				for(Character c : characters){
+					c.catchUp(missed);
+					recount(c);
+				}
+			}
+			fastForward(tick);
+			activity = Activity.ACTIVE;
+		}
+		lastTick = tick;
+		return true;
+	}
+
+	/**
+	 * Counts the players and busy characters in this zone, if they
+	 * haven't been counted yet. After that the counts are kept up to
+	 * date as characters come, go and ask to be ticked.
+	 */
+	private void countCharacters(){
+		if(counted) return;
+		players = 0;
+		busy = 0;
+		for(Character c : characters){
+			if(c instanceof Player)
+				players++;
+			c.setCountedBusy(c.isBusy());
+			if(c.isCountedBusy())
+				busy++;
+		}
+		counted = true;
+	}
+
+	private void countIn(Character c){
+		if(!counted) return;
+		if(c instanceof Player)
+			players++;
+		c.setCountedBusy(false);
+		recount(c);
+	}
+
+	private void countOut(Character c){
+		if(!counted) return;
+		if(c instanceof Player)
+			players--;
+		if(c.isCountedBusy()){
+			c.setCountedBusy(false);
+			busy--;
+		}
+	}
+
+	/**
+	 * Updates the busy count for a character in this zone which may
+	 * have started or stopped being busy.
+	 */
+	private void recount(Character c){
+		if(!counted) return;
+		boolean now = c.isBusy();
+		if(now != c.isCountedBusy()){
+			c.setCountedBusy(now);
+			busy += now ? 1 : -1;
 		}
 	}
 
+	/**
+	 * @return Whether or not this zone is being ticked at the same time as other zones.
+	 */
+	public boolean isTickingInParallel(){
+		return tickingInParallel;
+	}
+
+	/**
+	 * Puts off a change which reaches into other zones (such as a
+	 * character moving between zones) until every zone has finished
+	 * ticking. Only needed while isTickingInParallel() is true.
+	 *
+	 * @param change The change to make once all zones have ticked.
+	 */
+	public void defer(Runnable change){
+		if(!tickingInParallel)
+			throw new IllegalStateException("Changes only need to be deferred while zones are ticking in parallel.");
+		deferred.add(change);
+	}
+
+	void beginParallelTick(){
+		tickingInParallel = true;
+		deferred = new ArrayList<Runnable>();
+	}
+
+	/**
+	 * @return The changes deferred while this zone was ticking, in the order they were deferred.
+	 */
+	List<Runnable> endParallelTick(){
+		List<Runnable> changes = deferred;
+		tickingInParallel = false;
+		deferred = null;
+		return changes;
+	}
+
 	@Override
 	public Element toXMLElement(Document doc) {
 		Element elem = doc.createElement("zone");
 		elem.setAttribute("ID", id+"");
 		elem.setAttribute("name", name);
-		elem.setAttribute("width", tiles[0].length+"");
-		elem.setAttribute("height", tiles.length+"");
-		for(int x = 0; x < tiles[0].length; x++){
-			for(int y = 0; y < tiles.length; y++){
-				elem.appendChild(tiles[y][x].toXMLElement(doc));
+		elem.setAttribute("width", width+"");
+		elem.setAttribute("height", height+"");
+		for(int x = 0; x < width; x++){
+			for(int y = 0; y < height; y++){
+				Tile tile = TileType.fromID(tileTypes[y*width + x]).createTile(new Point(x, y));
+				elem.appendChild(tile.toXMLElement(doc));
 			}
 		}
 		elem.setAttribute("noItems", items.size()+"");
@@ -587,18 +1163,12 @@ public class Zone implements Storable, Serializable {
 			// If the basic attributes are the same, they can't be the same
 			if(!zone.name.equals(name))
 				return false;
-			if(zone.tiles[0].length != tiles[0].length || zone.tiles.length != tiles.length)
+			if(zone.width != width || zone.height != height)
 				return false;
 
 			// Otherwise just make sure every single tile is equal in both
-			for(int x = 0; x < tiles[0].length; x++){
-				for(int y = 0; y < tiles.length; y++){
-					
-					if(!zone.tiles[y][x].equals(tiles[y][x])){
-						return false;
-					}
-				}
-			}
+			if(!Arrays.equals(zone.tileTypes, tileTypes))
+				return false;
 			if(!(zone.entities.containsAll(this.entities)))return false;
 			if(!this.items.equals(zone.items)) return false;
 			if(!this.characters.equals(zone.characters)) return false;
@@ -609,10 +1179,10 @@ public class Zone implements Storable, Serializable {
 	}
 
 	public List<Tile> getTiles() {
-		List<Tile> tileList = new ArrayList<>();
-		for (Tile[] ts : tiles) {
-			for (Tile t : ts){
-				tileList.add(t);
+		List<Tile> tileList = new ArrayList<>(tileTypes.length);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++){
+				tileList.add(TileType.fromID(tileTypes[y*width + x]).createTile(new Point(x, y)));
 			}
 		}
 		return tileList;
@@ -629,11 +1199,8 @@ public class Zone implements Storable, Serializable {
 	 * @return character if found, else null
 	 */
 	public Character getCharacterFromID(long characterID) {
-		for (Character c : characters) {
-			if (c.getID() == characterID)
-				return c;
-		}
-		return null;
+		buildIndex();
+		return charactersByID.get(characterID);
 	}
 	
 	public String getName(){
@@ -641,11 +1208,18 @@ public class Zone implements Storable, Serializable {
 	}
 
 	public Entity getEntityFromID(long id) {
-		for (Entity e : getEntities()) {
-			if (e.getID() == id)
-				return e;
-		}
-		return null;
+		buildIndex();
+		return entitiesByID.get(id);
+	}
+	
+	/**
+	 * Get the item in this zone with a specified ID
+	 * @param id -- item ID to search for
+	 * @return item if found, else null
+	 */
+	public Item getItemFromID(long id) {
+		buildIndex();
+		return itemsByID.get(id);
 	}
 	
 }
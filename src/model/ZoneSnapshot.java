@@ -0,0 +1,426 @@
+package model;
+
+import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import util.Coord;
+import util.Direction;
+import util.VarInt;
+
+/**
+ * An immutable capture of the parts of a zone which change while
+ * the game is being played: where characters and entities are,
+ * enemy health, gate states, items and the contents of player
+ * inventories.
+ *
+ * Snapshots let a zone be sent incrementally. Once a full copy of
+ * a zone has been sent, only the records which differ between the
+ * latest snapshot and an earlier one need to be sent. Changes which
+ * can't be described that way (a character entering or leaving, an
+ * interaction being removed, ...) change the structure of the
+ * snapshot, and a full copy of the zone is needed again.
+ *
+ * Tiles aren't recorded at all; changing one changes the structure,
+ * so it reaches clients with the next full copy of the zone.
+ */
+public final class ZoneSnapshot {
+	// Values stored for each character: x, y, facing, health
+	private static final int CHARACTER_STRIDE = 4;
+	// For each entity: x, y, facing, flags
+	private static final int ENTITY_STRIDE = 4;
+	// For each item: in inventory, x, y, stack size
+	private static final int ITEM_STRIDE = 4;
+
+	// Entity flags; gate states are stored above these as (ordinal + 1)
+	private static final int PASSABLE = 1;
+	private static final int GATE_SHIFT = 1;
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final long zoneID;
+	private final long structure;
+
+	private final long[] characterIDs;
+	private final int[] characters;
+	private final long[] entityIDs;
+	private final int[] entities;
+	private final long[] itemIDs;
+	private final int[] items;
+	// For each player; the ID of their equipped weapon, followed by
+	// the ID of the item in each inventory slot (-1 for none)
+	private final long[] playerIDs;
+	private final long[][] players;
+
+	private ZoneSnapshot(long zoneID, long structure,
+			long[] characterIDs, int[] characters,
+			long[] entityIDs, int[] entities,
+			long[] itemIDs, int[] items,
+			long[] playerIDs, long[][] players){
+		this.zoneID = zoneID;
+		this.structure = structure;
+		this.characterIDs = characterIDs;
+		this.characters = characters;
+		this.entityIDs = entityIDs;
+		this.entities = entities;
+		this.itemIDs = itemIDs;
+		this.items = items;
+		this.playerIDs = playerIDs;
+		this.players = players;
+	}
+
+	/**
+	 * Captures the current state of the given zone.
+	 *
+	 * @param zone The zone to capture.
+	 * @return A snapshot of the zone as it is now.
+	 */
+	public static ZoneSnapshot capture(Zone zone){
+		CharacterStore cs = zone.getCharacterStore();
+		// Records follow the zone's list of characters, not the store's
+		// slots, which are reordered as characters leave; whoever applies
+		// this may have captured its copy of the zone without a store
+		List<Character> chars = zone.getCharacters();
+		List<Entity> es = zone.getEntities();
+		List<Item> is = zone.getItems();
+
+		long hash = mix(mix(FNV_OFFSET, zone.getID()), zone.getTileVersion());
+		hash = mix(hash, zone.getWidth());
+		hash = mix(hash, zone.getHeight());
+
+		long[] itemIDs = new long[is.size()];
+		int[] items = new int[is.size() * ITEM_STRIDE];
+		Set<Long> known = new HashSet<Long>();
+		for(int i = 0; i < is.size(); i++){
+			Item item = is.get(i);
+			itemIDs[i] = item.getID();
+			known.add(item.getID());
+			hash = mix(mix(hash, item.getID()), item.getClass().getName().hashCode());
+
+			int base = i * ITEM_STRIDE;
+			boolean inInventory = item.inInventory();
+			Point p = inInventory ? null : item.getPosition();
+			items[base] = inInventory ? 1 : 0;
+			items[base + 1] = p == null ? -1 : p.x;
+			items[base + 2] = p == null ? -1 : p.y;
+			items[base + 3] = item.getStackSize();
+		}
+
+		int playerCount = 0;
+		for(int i = 0; i < cs.size(); i++){
+			if(cs.kind(i) == CharacterStore.PLAYER) playerCount++;
+		}
+
+		long[] characterIDs = new long[chars.size()];
+		int[] characters = new int[chars.size() * CHARACTER_STRIDE];
+		long[] playerIDs = new long[playerCount];
+		long[][] players = new long[playerCount][];
+		int player = 0;
+		for(int i = 0; i < chars.size(); i++){
+			Character c = chars.get(i);
+			int slot = c.getSlot();
+			characterIDs[i] = c.getID();
+			hash = mix(mix(hash, c.getID()), c.getClass().getName().hashCode());
+
+			int base = i * CHARACTER_STRIDE;
+			characters[base] = cs.x(slot);
+			characters[base + 1] = cs.y(slot);
+			characters[base + 2] = cs.facing(slot);
+			characters[base + 3] = cs.health(slot);
+
+			if(cs.kind(slot) == CharacterStore.PLAYER){
+				Player p = (Player)c;
+				Item[] slots = p.getInventory().getItems();
+				long[] record = new long[slots.length + 1];
+				record[0] = itemID(p.getEquipped());
+				for(int j = 0; j < slots.length; j++){
+					record[j + 1] = itemID(slots[j]);
+				}
+				// Items which didn't come from this zone can't be found by ID
+				// by whoever applies this snapshot, so they're part of the structure
+				for(int j = 0; j < record.length; j++){
+					Item item = j == 0 ? p.getEquipped() : slots[j - 1];
+					if(item != null && !known.contains(item.getID()))
+						hash = mix(mix(hash, item.getID()), item.getClass().getName().hashCode());
+				}
+				playerIDs[player] = p.getID();
+				players[player++] = record;
+			}
+		}
+
+		long[] entityIDs = new long[es.size()];
+		int[] entities = new int[es.size() * ENTITY_STRIDE];
+		for(int i = 0; i < es.size(); i++){
+			Entity e = es.get(i);
+			entityIDs[i] = e.getID();
+			hash = mix(mix(hash, e.getID()), e.getClass().getName().hashCode());
+			for(Interaction interaction : e.getInteractions()){
+				hash = mix(hash, interaction.getClass().getName().hashCode());
+				hash = mix(hash, interaction.getText().hashCode());
+			}
+
+			int base = i * ENTITY_STRIDE;
+			Coord coord = e.getCoord();
+			entities[base] = coord.getPoint().x;
+			entities[base + 1] = coord.getPoint().y;
+			entities[base + 2] = coord.getFacing().getDirection();
+			int flags = e.isPassable() ? PASSABLE : 0;
+			if(e instanceof Gate)
+				flags |= (((Gate)e).getState().ordinal() + 1) << GATE_SHIFT;
+			entities[base + 3] = flags;
+		}
+
+		return new ZoneSnapshot(zone.getID(), hash, characterIDs, characters,
+				entityIDs, entities, itemIDs, items, playerIDs, players);
+	}
+
+	/**
+	 * @return The ID of the zone this is a snapshot of.
+	 */
+	public long getZoneID(){
+		return zoneID;
+	}
+
+	/**
+	 * Returns whether or not the differences between this snapshot
+	 * and the given one can be described by a delta. This is only
+	 * the case if both are of the same zone, and the same characters,
+	 * entities, interactions and items exist in both.
+	 *
+	 * @param baseline The snapshot to compare against.
+	 * @return Whether or not a delta can be written against the baseline.
+	 */
+	public boolean isCompatible(ZoneSnapshot baseline){
+		return baseline != null && baseline.zoneID == zoneID && baseline.structure == structure;
+	}
+
+	/**
+	 * Writes every record of this snapshot which differs from the given
+	 * baseline. All values written are absolute, so a delta may be
+	 * applied to the baseline no matter what has been applied since.
+	 *
+	 * @param baseline A compatible snapshot that the reader also holds.
+	 * @param out The output to write the delta to.
+	 * @throws IllegalArgumentException If the baseline isn't compatible with this snapshot.
+	 */
+	public void writeDelta(ZoneSnapshot baseline, DataOutput out) throws IOException {
+		if(!isCompatible(baseline))
+			throw new IllegalArgumentException("Can't write a delta against an incompatible snapshot.");
+
+		writeRecords(out, characters, baseline.characters, CHARACTER_STRIDE);
+		writeRecords(out, entities, baseline.entities, ENTITY_STRIDE);
+		writeRecords(out, items, baseline.items, ITEM_STRIDE);
+
+		int changed = 0;
+		for(int i = 0; i < players.length; i++){
+			if(!Arrays.equals(players[i], baseline.players[i])) changed++;
+		}
+		VarInt.writeUnsigned(out, changed);
+		int previous = 0;
+		for(int i = 0; i < players.length; i++){
+			if(Arrays.equals(players[i], baseline.players[i])) continue;
+			VarInt.writeUnsigned(out, i - previous);
+			previous = i;
+			VarInt.writeUnsigned(out, players[i].length);
+			for(long value : players[i])
+				VarInt.writeSigned(out, value);
+		}
+	}
+
+	/**
+	 * Reads a delta written against this snapshot, returning the
+	 * snapshot it describes.
+	 *
+	 * @param in The input to read the delta from.
+	 * @return The snapshot which results from applying the delta to this one.
+	 */
+	public ZoneSnapshot readDelta(DataInput in) throws IOException {
+		int[] newCharacters = readRecords(in, characters, CHARACTER_STRIDE);
+		int[] newEntities = readRecords(in, entities, ENTITY_STRIDE);
+		int[] newItems = readRecords(in, items, ITEM_STRIDE);
+
+		long[][] newPlayers = players.clone();
+		int changed = VarInt.readLength(in, players.length);
+		int index = 0;
+		for(int i = 0; i < changed; i++){
+			index = nextIndex(in, index, players.length);
+			long[] record = new long[VarInt.readLength(in, players[index].length)];
+			for(int j = 0; j < record.length; j++)
+				record[j] = VarInt.readSigned(in);
+			newPlayers[index] = record;
+		}
+
+		return new ZoneSnapshot(zoneID, structure, characterIDs, newCharacters,
+				entityIDs, newEntities, itemIDs, newItems, playerIDs, newPlayers);
+	}
+
+	/**
+	 * Mirrors this snapshot onto a zone, which is assumed to currently
+	 * reflect the previous snapshot. Only records which differ from the
+	 * previous snapshot are touched; if there isn't a compatible previous
+	 * snapshot, everything is.
+	 *
+	 * No game logic is run while doing this; for example, a player being
+	 * moved onto an item won't pick it up.
+	 *
+	 * @param zone The zone to update.
+	 * @param previous The snapshot that the zone currently reflects, or null.
+	 */
+	public void applyTo(Zone zone, ZoneSnapshot previous){
+		if(zone.getID() != zoneID)
+			throw new IllegalArgumentException("Trying to apply a snapshot to the wrong zone.");
+		if(!isCompatible(previous))
+			previous = null;
+
+		for(int i = 0; i < itemIDs.length; i++){
+			int base = i * ITEM_STRIDE;
+			if(previous != null && sameRecord(items, previous.items, base, ITEM_STRIDE)) continue;
+			Item item = zone.getItemFromID(itemIDs[i]);
+			if(item == null) continue;
+			Point p = items[base] == 1 ? null : new Point(items[base + 1], items[base + 2]);
+			item.restore(items[base] == 1, p, items[base + 3]);
+		}
+
+		for(int i = 0; i < characterIDs.length; i++){
+			int base = i * CHARACTER_STRIDE;
+			if(previous != null && sameRecord(characters, previous.characters, base, CHARACTER_STRIDE)) continue;
+			Character c = zone.getCharacterFromID(characterIDs[i]);
+			if(c == null) continue;
+			c.teleportTo(characters[base], characters[base + 1], Direction.of(characters[base + 2]));
+			if(c instanceof Enemy)
+				((Enemy)c).setRemainingHealth(characters[base + 3]);
+		}
+
+		for(int i = 0; i < playerIDs.length; i++){
+			if(previous != null && Arrays.equals(players[i], previous.players[i])) continue;
+			Character c = zone.getCharacterFromID(playerIDs[i]);
+			if(!(c instanceof Player)) continue;
+			Player p = (Player)c;
+			long[] record = players[i];
+
+			Inventory inventory = p.getInventory();
+			Item[] current = inventory.getItems();
+			Item equipped = findItem(zone, current, p.getEquipped(), record[0]);
+			Item[] slots = new Item[record.length - 1];
+			for(int j = 0; j < slots.length; j++)
+				slots[j] = findItem(zone, current, p.getEquipped(), record[j + 1]);
+
+			if(inventory.getStorageCapacity() != slots.length)
+				inventory.changeStorageCapacity(slots.length);
+			for(int j = 0; j < slots.length; j++)
+				inventory.setItem(j, slots[j]);
+			p.setEquipped(equipped instanceof Weapon ? (Weapon)equipped : null);
+		}
+
+		for(int i = 0; i < entityIDs.length; i++){
+			int base = i * ENTITY_STRIDE;
+			if(previous != null && sameRecord(entities, previous.entities, base, ENTITY_STRIDE)) continue;
+			Entity e = zone.getEntityFromID(entityIDs[i]);
+			if(e == null) continue;
+			Coord coord = e.getCoord();
+			if(coord.getPoint().x != entities[base] || coord.getPoint().y != entities[base + 1]
+					|| coord.getFacing().getDirection() != entities[base + 2]){
+				e.teleportTo(new Coord(Direction.of(entities[base + 2]),
+						new Point(entities[base], entities[base + 1])));
+			}
+			int flags = entities[base + 3];
+			if(e instanceof KeyGate)
+				((KeyGate)e).setPassable((flags & PASSABLE) != 0);
+			if(e instanceof Gate && (flags >> GATE_SHIFT) != 0)
+				((Gate)e).setState(Gate.State.values()[(flags >> GATE_SHIFT) - 1]);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o){
+		if(o instanceof ZoneSnapshot){
+			ZoneSnapshot s = (ZoneSnapshot)o;
+			return isCompatible(s) && Arrays.equals(characters, s.characters)
+					&& Arrays.equals(entities, s.entities) && Arrays.equals(items, s.items)
+					&& Arrays.deepEquals(players, s.players);
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode(){
+		return (int)(structure ^ (structure >>> 32)) + 31 * Arrays.hashCode(characters);
+	}
+
+	private static void writeRecords(DataOutput out, int[] values, int[] baseline, int stride) throws IOException {
+		int changed = 0;
+		for(int base = 0; base < values.length; base += stride){
+			if(!sameRecord(values, baseline, base, stride)) changed++;
+		}
+		VarInt.writeUnsigned(out, changed);
+		int previous = 0;
+		for(int base = 0; base < values.length; base += stride){
+			if(sameRecord(values, baseline, base, stride)) continue;
+			VarInt.writeUnsigned(out, base / stride - previous);
+			previous = base / stride;
+			for(int j = 0; j < stride; j++)
+				VarInt.writeSigned(out, values[base + j]);
+		}
+	}
+
+	private static int[] readRecords(DataInput in, int[] values, int stride) throws IOException {
+		int[] result = values.clone();
+		int count = values.length / stride;
+		int changed = VarInt.readLength(in, count);
+		int index = 0;
+		for(int i = 0; i < changed; i++){
+			index = nextIndex(in, index, count);
+			for(int j = 0; j < stride; j++)
+				result[index * stride + j] = VarInt.readSignedInt(in);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the index of the next changed record. Records are always
+	 * written in order, so each index is sent as the gap from the last.
+	 */
+	private static int nextIndex(DataInput in, int previous, int count) throws IOException {
+		long index = previous + VarInt.readUnsigned(in);
+		if(index < previous || index >= count)
+			throw new StreamCorruptedException("Delta refers to a record which doesn't exist.");
+		return (int)index;
+	}
+
+	private static boolean sameRecord(int[] a, int[] b, int base, int stride){
+		for(int j = 0; j < stride; j++){
+			if(a[base + j] != b[base + j]) return false;
+		}
+		return true;
+	}
+
+	private static Item findItem(Zone zone, Item[] inventory, Item equipped, long id){
+		if(id < 0) return null;
+		Item item = zone.getItemFromID(id);
+		if(item != null) return item;
+		for(Item i : inventory){
+			if(i != null && i.getID() == id) return i;
+		}
+		if(equipped != null && equipped.getID() == id) return equipped;
+		return null;
+	}
+
+	private static long itemID(Item item){
+		return item == null ? -1 : item.getID();
+	}
+
+	private static long mix(long hash, long value){
+		for(int i = 0; i < 8; i++){
+			hash ^= (value >>> (i * 8)) & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
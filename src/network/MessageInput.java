@@ -0,0 +1,187 @@
+package network;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import network.Protocol.Event;
+import util.VarInt;
+
+/**
+ * Reads messages in the wire format described in network.Protocol.
+ * next() reads a whole message from the underlying stream (or from
+ * a buffer, for non-blocking connections), after which its fields
+ * are read with the read methods. Anything not read from a message
+ * is skipped when the next one is read.
+ */
+public class MessageInput extends DataInputStream {
+	/* stream messages are read from */
+	private final DataInputStream source;
+
+	/* buffer holding the current message */
+	private final Buffer buffer;
+
+	/**
+	 * Construct a MessageInput reading from a stream
+	 * @param source
+	 */
+	public MessageInput(InputStream source) {
+		this(new DataInputStream(source), new Buffer());
+	}
+
+	/**
+	 * Construct a MessageInput which reads messages out of buffers
+	 * passed to next(ByteBuffer)
+	 */
+	public MessageInput() {
+		this(null, new Buffer());
+	}
+
+	private MessageInput(DataInputStream source, Buffer buffer) {
+		super(buffer);
+		this.source = source;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Read the next message from the stream
+	 * @return the event the message carries, or null if the stream ended
+	 * @throws IOException if the message is malformed
+	 */
+	public Event next() throws IOException {
+		int length;
+		try {
+			length = VarInt.readLength(source, Protocol.MAX_MESSAGE_SIZE);
+		} catch (EOFException e) {
+			return null;
+		}
+		if (length == 0)
+			throw new StreamCorruptedException("Received empty message");
+
+		source.readFully(buffer.fill(length), 0, length);
+		return readOpcode();
+	}
+
+	/**
+	 * Read the next message from a buffer, if the buffer holds all of it.
+	 * The buffer's position is moved past the message, or left alone if
+	 * the message is incomplete.
+	 * @param source -- buffer to read from, between its position and limit
+	 * @return the event the message carries, or null if the buffer doesn't
+	 * hold a whole message yet
+	 * @throws IOException if the message is malformed
+	 */
+	public Event next(ByteBuffer source) throws IOException {
+		int start = source.position();
+		long length = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (!source.hasRemaining()) {
+				source.position(start);
+				return null;
+			}
+			int b = source.get() & 0xFF;
+			length |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				break;
+			if (shift > 28)
+				throw new StreamCorruptedException("Message length is too long");
+		}
+		if (length == 0 || length > Protocol.MAX_MESSAGE_SIZE)
+			throw new StreamCorruptedException("Received message of length "+length);
+		if (source.remaining() < length) {
+			source.position(start);
+			return null;
+		}
+
+		source.get(buffer.fill((int)length), 0, (int)length);
+		return readOpcode();
+	}
+
+	private Event readOpcode() throws IOException {
+		int opcode = readUnsignedByte();
+		Event event = Event.fromOpcode(opcode);
+		if (event == null)
+			throw new StreamCorruptedException("Received unknown opcode "+opcode);
+		return event;
+	}
+
+	/**
+	 * Read a number written by MessageOutput.writeVarLong
+	 * @return
+	 * @throws IOException
+	 */
+	public long readVarLong() throws IOException {
+		return VarInt.readUnsigned(this);
+	}
+
+	/**
+	 * Read a number written by MessageOutput.writeVarInt
+	 * @return
+	 * @throws IOException
+	 */
+	public int readVarInt() throws IOException {
+		return VarInt.readSignedInt(this);
+	}
+
+	/**
+	 * Read a string written by MessageOutput.writeString
+	 * @return
+	 * @throws IOException
+	 */
+	public String readString() throws IOException {
+		return new String(readBlob(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Read an array of bytes written by MessageOutput.writeBlob
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] readBlob() throws IOException {
+		byte[] bytes = new byte[VarInt.readLength(this, available())];
+		readFully(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Read an object written by MessageOutput.writeSerialised
+	 * @return
+	 * @throws IOException
+	 * @throws ClassNotFoundException
+	 */
+	public Object readSerialised() throws IOException, ClassNotFoundException {
+		ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBlob()));
+		return objects.readObject();
+	}
+
+	/**
+	 * ByteArrayInputStream whose contents can be replaced
+	 */
+	private static class Buffer extends ByteArrayInputStream {
+		Buffer() {
+			super(new byte[256]);
+			count = 0;
+		}
+
+		/**
+		 * Make room for a message, which the caller then reads into
+		 * the returned array
+		 * @param length -- length of the message
+		 * @return the array to read the message into
+		 */
+		byte[] fill(int length) {
+			if (buf.length < length)
+				buf = new byte[Math.max(length, buf.length * 2)];
+			pos = 0;
+			count = length;
+			mark = 0;
+			return buf;
+		}
+	}
+}
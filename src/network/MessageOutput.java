@@ -0,0 +1,155 @@
+package network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import network.Protocol.Event;
+import util.VarInt;
+
+/**
+ * Builds messages in the wire format described in network.Protocol.
+ * A message is started with begin(), its fields written with the
+ * write methods, and the finished message sent with writeTo().
+ *
+ * The buffer is reused from message to message, so a MessageOutput
+ * must only be used by one thread at a time.
+ */
+public class MessageOutput extends DataOutputStream {
+	/* buffer holding the message being built */
+	private final Buffer buffer;
+
+	/* scratch space for framing the message length */
+	private final Buffer header = new Buffer();
+	private final DataOutputStream headerOut = new DataOutputStream(header);
+
+	/**
+	 * Construct a MessageOutput with an empty buffer
+	 */
+	public MessageOutput() {
+		this(new Buffer());
+	}
+
+	private MessageOutput(Buffer buffer) {
+		super(buffer);
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Start a new message, discarding anything written since the last one
+	 * @param event -- the event the message carries
+	 * @return this, for convenience
+	 * @throws IOException
+	 */
+	public MessageOutput begin(Event event) throws IOException {
+		buffer.reset();
+		writeByte(event.getOpcode());
+		return this;
+	}
+
+	/**
+	 * Write a non-negative number, such as an ID or frame number
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeVarLong(long value) throws IOException {
+		VarInt.writeUnsigned(this, value);
+	}
+
+	/**
+	 * Write a number which may be negative, such as a coordinate
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeVarInt(int value) throws IOException {
+		VarInt.writeSigned(this, value);
+	}
+
+	/**
+	 * Write a length-prefixed UTF-8 string
+	 * @param value
+	 * @throws IOException
+	 */
+	public void writeString(String value) throws IOException {
+		writeBlob(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Write a length-prefixed array of bytes
+	 * @param bytes
+	 * @throws IOException
+	 */
+	public void writeBlob(byte[] bytes) throws IOException {
+		writeVarLong(bytes.length);
+		write(bytes);
+	}
+
+	/**
+	 * Write a length-prefixed Java serialised object. Only for
+	 * things too large or rare to be worth a hand-written encoding
+	 * @param object
+	 * @throws IOException
+	 */
+	public void writeSerialised(Object object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream objects = new ObjectOutputStream(bytes);
+		objects.writeObject(object);
+		objects.close();
+		writeBlob(bytes.toByteArray());
+	}
+
+	/**
+	 * Get the size the current message will take on the wire,
+	 * including its framing
+	 * @return
+	 * @throws IOException
+	 */
+	public int getFramedSize() throws IOException {
+		frame();
+		return header.size() + buffer.size();
+	}
+
+	/**
+	 * Copy the current message, framed, into a new array
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] toByteArray() throws IOException {
+		frame();
+		byte[] bytes = new byte[header.size() + buffer.size()];
+		System.arraycopy(header.array(), 0, bytes, 0, header.size());
+		System.arraycopy(buffer.array(), 0, bytes, header.size(), buffer.size());
+		return bytes;
+	}
+
+	/**
+	 * Write the current message, framed, to a stream. The stream
+	 * isn't flushed.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		frame();
+		header.writeTo(out);
+		buffer.writeTo(out);
+	}
+
+	private void frame() throws IOException {
+		if (buffer.size() > Protocol.MAX_MESSAGE_SIZE)
+			throw new IOException("Message of "+buffer.size()+" bytes is too large to send");
+		header.reset();
+		VarInt.writeUnsigned(headerOut, buffer.size());
+	}
+
+	/**
+	 * ByteArrayOutputStream exposing its backing array
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+		byte[] array() {
+			return buf;
+		}
+	}
+}
@@ -28,30 +28,86 @@ public class Protocol {
 	public static final String SERVER_MAGIC = "Yes helo does the mcborger contain vegetal\n";
 	public static final String CLIENT_MAGIC = "no\n";
 
-	/* delay between game state updates (milliseconds) */
-	public static final long UPDATE_DELAY = 50;
+	/* zone state is sent as a full keyframe, followed by deltas against
+	 * whichever snapshot the client last acknowledged. A keyframe is
+	 * forced at least this often (in updates), so that a client which
+	 * somehow drifted out of sync is eventually corrected */
+	public static final int KEYFRAME_INTERVAL = 100;
 	
-	/* Events that can be communicated between client and server */
+	/* number of recent snapshots of each zone the server keeps to diff
+	 * against, and the client keeps to apply deltas to; a client whose
+	 * acknowledged snapshot is older than this is sent a keyframe */
+	public static final int SNAPSHOT_HISTORY = 32;
+	
+	/* version of the wire format below; sent by both sides during the
+	 * handshake, which fails if they don't match */
+	public static final int VERSION = 2;
+	
+	/* every message is framed as a varint length followed by that many
+	 * bytes: an opcode byte and then the event's fields, mostly varints.
+	 * Messages longer than this are treated as a corrupt stream */
+	public static final int MAX_MESSAGE_SIZE = 1 << 24;
+	
+	/* Events that can be communicated between client and server, and
+	 * their fields. Opcodes are part of the wire format; don't reuse
+	 * or renumber them without bumping VERSION */
 	public static enum Event {
 		/* movement */
-		FORWARD,
-		BACKWARD,
-		MOVE_TO_POINT,
+		FORWARD(1),
+		BACKWARD(2),
+		MOVE_TO_POINT(3),               /* x, y */
 		
 		/* rotation */
-		ROTATE_CLOCKWISE,
-		ROTATE_ANTICLOCKWISE,
+		ROTATE_CLOCKWISE(4),
+		ROTATE_ANTICLOCKWISE(5),
 		
 		/* interaction */
-		INTERACT,
-		ATTACK,
+		INTERACT(6),                    /* entity ID, interaction ID */
+		ATTACK(7),                      /* character ID */
 		
 		/* downlink messages */
-		POPUP_MESSAGE,
-		YOUR_CHARACTER_ID,
+		POPUP_MESSAGE(8),               /* string */
+		YOUR_CHARACTER_ID(9),           /* character ID */
+		
+		/* zone state; keyframes carry the whole zone, deltas carry
+		 * changes since a snapshot the client has acknowledged */
+		ZONE_KEYFRAME(10),              /* frame, serialised zone */
+		ZONE_DELTA(11),                 /* zone ID, frame, base frame, delta */
+		SNAPSHOT_ACK(12),               /* zone ID, frame */
 		
 		/* game state actions */
-		GAME_SAVE,
-		GAME_LOAD,
+		GAME_SAVE(13),                  /* string */
+		GAME_LOAD(14);                  /* string */
+		
+		private static final Event[] byOpcode = new Event[256];
+		static {
+			for (Event e : values())
+				byOpcode[e.opcode] = e;
+		}
+		
+		private final int opcode;
+		
+		private Event(int opcode) {
+			this.opcode = opcode;
+		}
+		
+		/**
+		 * Get the byte identifying this event on the wire
+		 * @return
+		 */
+		public int getOpcode() {
+			return opcode;
+		}
+		
+		/**
+		 * Get the event identified by an opcode
+		 * @param opcode
+		 * @return the event, or null if no event has that opcode
+		 */
+		public static Event fromOpcode(int opcode) {
+			if (opcode < 0 || opcode >= byOpcode.length)
+				return null;
+			return byOpcode[opcode];
+		}
 	};
 }
@@ -1,15 +1,22 @@
 package network.client;
 
 
-import java.io.ObjectOutputStream;
-import java.io.ObjectInputStream;
 import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.lang.Thread.UncaughtExceptionHandler;
 
+import model.Interactable;
 import model.Interaction;
 import view.GameFrame;
+import network.MessageInput;
+import network.MessageOutput;
 import network.NetworkError;
 import network.Protocol;
 import network.Protocol.Event;
@@ -25,8 +32,11 @@ public class Client {
 	private String host;
 	private int port;
 	private Socket sock;
-	private ObjectOutputStream out;
-	private ObjectInputStream in;
+	private OutputStream out;
+	private InputStream in;
+	
+	/* buffer commands are built in; only used while synchronised */
+	private MessageOutput message = new MessageOutput();
 	private ClientThread clientThread;
 	private UncaughtExceptionHandler errorHandler;
 	private GameFrame frame;
@@ -59,26 +69,19 @@ public class Client {
 	 * @throws IOException
 	 */
 	public boolean doHandshake(Socket socket) throws IOException {
-		/* receive server's greeting */
-		Object rawResponse;
-		
-		/* receive from the other end, failing if no such local class */
-		try {
-			rawResponse = in.readObject();
-		} catch (ClassNotFoundException e) {
-			return false;
-		}
+		/* receive server's greeting + protocol version */
+		DataInputStream dataIn = new DataInputStream(in);
+		String response = dataIn.readUTF();
+		int version = dataIn.readUnsignedByte();
 		
-		if (!(rawResponse instanceof String))
-			return false;
+		/* reply with our magic sequence + protocol version */
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeUTF(Protocol.CLIENT_MAGIC);
+		dataOut.writeByte(Protocol.VERSION);
+		dataOut.flush();
 		
-		String response = (String)rawResponse;
-		
-		/* reply with our magic sequence */
-		out.writeObject(Protocol.CLIENT_MAGIC);
-		
-		/* did the client's response match the expected value? */
-		return (response != null && response.equals(Protocol.SERVER_MAGIC));
+		/* did the server's greeting match the expected value? */
+		return response.equals(Protocol.SERVER_MAGIC) && version == Protocol.VERSION;
 	}
 	
 	/**
@@ -90,9 +93,9 @@ public class Client {
 			/* create socket connection to host:port */
 			sock = new Socket(host, port);
 			
-			/* create input+output streams for objects */
-			out = new ObjectOutputStream(sock.getOutputStream());
-			in = new ObjectInputStream(sock.getInputStream());
+			/* create buffered input+output streams */
+			out = new BufferedOutputStream(sock.getOutputStream());
+			in = new BufferedInputStream(sock.getInputStream());
 			
 			/* attempt handshake with server, bailing if it fails */
 			if (!doHandshake(sock)) {
@@ -100,7 +103,7 @@ public class Client {
 				throw new NetworkError("Handshaking with server failed");
 			}
 			System.out.println("Starting client thread");
-			this.clientThread = new ClientThread(in, this.frame);
+			this.clientThread = new ClientThread(this, new MessageInput(in), this.frame);
 			this.clientThread.setUncaughtExceptionHandler(errorHandler);
 			this.clientThread.start();
 		} catch (IOException e) {
@@ -137,9 +140,11 @@ public class Client {
 	 * 
 	 * @param newPoint The point to move to.
 	 */
-	public void moveTo(Point newPoint) throws IOException {
-		out.writeObject(Event.MOVE_TO_POINT);
-		out.writeObject(newPoint);
+	public synchronized void moveTo(Point newPoint) throws IOException {
+		message.begin(Event.MOVE_TO_POINT);
+		message.writeVarInt(newPoint.x);
+		message.writeVarInt(newPoint.y);
+		send();
 	}
 	
 	/**
@@ -147,8 +152,9 @@ public class Client {
 	 * their facing direction)
 	 * @throws IOException
 	 */
-	public void moveForward() throws IOException {
-		out.writeObject(Event.FORWARD);
+	public synchronized void moveForward() throws IOException {
+		message.begin(Event.FORWARD);
+		send();
 	}
 	
 	/**
@@ -156,8 +162,9 @@ public class Client {
 	 * their facing direction)
 	 * @throws IOException
 	 */
-	public void moveBackward() throws IOException {
-		out.writeObject(Event.BACKWARD);
+	public synchronized void moveBackward() throws IOException {
+		message.begin(Event.BACKWARD);
+		send();
 	}
 	
 	/**
@@ -165,8 +172,9 @@ public class Client {
 	 * when looking top-down
 	 * @throws IOException
 	 */
-	public void rotateClockwise() throws IOException {
-		out.writeObject(Event.ROTATE_CLOCKWISE);
+	public synchronized void rotateClockwise() throws IOException {
+		message.begin(Event.ROTATE_CLOCKWISE);
+		send();
 	}
 	
 	/**
@@ -174,8 +182,9 @@ public class Client {
 	 * when looking top-down
 	 * @throws IOException
 	 */
-	public void rotateAnticlockwise() throws IOException {
-		out.writeObject(Event.ROTATE_ANTICLOCKWISE);
+	public synchronized void rotateAnticlockwise() throws IOException {
+		message.begin(Event.ROTATE_ANTICLOCKWISE);
+		send();
 	}
 	
 	/**
@@ -184,19 +193,37 @@ public class Client {
 	 * @param point The point to attack (occupant(s))
 	 * @throws IOException
 	 */
-	public void attack(long enemyID) throws IOException {
-		out.writeObject(Event.ATTACK);
-		out.writeLong(enemyID);
+	public synchronized void attack(long enemyID) throws IOException {
+		message.begin(Event.ATTACK);
+		message.writeVarLong(enemyID);
+		send();
 	}
 	
 	/**
 	 * Ask the server to execute the specified interaction
-	 * @param interaction
+	 * @param interactable -- what the interaction is on
+	 * @param interaction -- one of its interactions
+	 * @throws IOException
+	 */
+	public synchronized void interact(Interactable interactable, Interaction interaction) throws IOException {
+		message.begin(Event.INTERACT);
+		message.writeVarLong(interactable.getID());
+		message.writeVarInt(interaction.getID());
+		send();
+	}
+	
+	/**
+	 * Tell the server that a snapshot of a zone has been received
+	 * and applied, so that it can send later changes relative to it
+	 * @param zoneID -- zone the snapshot was of
+	 * @param frame -- frame the snapshot was sent in
 	 * @throws IOException
 	 */
-	public void interact(Interaction interaction) throws IOException {
-		out.writeObject(Event.INTERACT);
-		out.writeObject(interaction);
+	public synchronized void acknowledgeSnapshot(long zoneID, long frame) throws IOException {
+		message.begin(Event.SNAPSHOT_ACK);
+		message.writeVarLong(zoneID);
+		message.writeVarLong(frame);
+		send();
 	}
 	
 	/**
@@ -204,9 +231,10 @@ public class Client {
 	 * @param name -- the filename to save to server-side
 	 * @throws IOException
 	 */
-	public void saveWorld(String name) throws IOException {
-		out.writeObject(Event.GAME_SAVE);
-		out.writeUTF(name);
+	public synchronized void saveWorld(String name) throws IOException {
+		message.begin(Event.GAME_SAVE);
+		message.writeString(name);
+		send();
 	}
 	
 	/**
@@ -214,8 +242,18 @@ public class Client {
 	 * @param name -- the filename to save to server-side
 	 * @throws IOException
 	 */
-	public void loadWorld(String name) throws IOException {
-		out.writeObject(Event.GAME_LOAD);
-		out.writeUTF(name);
+	public synchronized void loadWorld(String name) throws IOException {
+		message.begin(Event.GAME_LOAD);
+		message.writeString(name);
+		send();
+	}
+	
+	/**
+	 * Send the message which has just been built to the server
+	 * @throws IOException
+	 */
+	private void send() throws IOException {
+		message.writeTo(out);
+		out.flush();
 	}
 }
@@ -1,73 +1,140 @@
 package network.client;
 
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.swing.JOptionPane;
 
-import model.Inventory;
 import model.Player;
 import model.Zone;
+import model.ZoneSnapshot;
 import view.GameFrame;
-import view.RenderPanel;
+import network.MessageInput;
 import network.NetworkError;
+import network.Protocol;
 import network.Protocol.Event;
 
 /**
  * Client worker thread for listening to the server's socket, with client sending stuff to the server
- * 
+ *
  * @author Joshua Hurst
  */
 public class ClientThread extends Thread{
 
 	/* socket connected to server and input stream */
-	private ObjectInputStream in;
+	private MessageInput in;
 	private GameFrame frame;
-	
+	private Client client;
+
 	private boolean running;
 
-	public ClientThread(ObjectInputStream in, GameFrame frame) {
+	/* zone currently being displayed, and the snapshot it reflects */
+	private Zone zone;
+	private ZoneSnapshot zoneSnapshot;
+
+	/* recent snapshots of the current zone by frame, for applying deltas to */
+	private Map<Long, ZoneSnapshot> snapshots = new LinkedHashMap<Long, ZoneSnapshot>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ZoneSnapshot> eldest) {
+			return size() > Protocol.SNAPSHOT_HISTORY;
+		}
+	};
+
+	public ClientThread(Client client, MessageInput in, GameFrame frame) {
+		this.client = client;
 		this.in = in;
 		this.frame = frame;
 	}
 
+	/**
+	 * Display a complete zone sent by the server
+	 * @param frameNumber -- frame the zone was sent in
+	 * @param newZone -- the zone
+	 * @throws IOException
+	 */
+	private void receiveKeyframe(long frameNumber, Zone newZone) throws IOException {
+		/* snapshots of any other zone are no use now */
+		if (zone == null || zone.getID() != newZone.getID())
+			snapshots.clear();
+
+		zone = newZone;
+		zoneSnapshot = ZoneSnapshot.capture(newZone);
+		snapshots.put(frameNumber, zoneSnapshot);
+		frame.getRenderPanel().setZone(newZone);
+		client.acknowledgeSnapshot(newZone.getID(), frameNumber);
+	}
+
+	/**
+	 * Apply a delta sent by the server to the current zone. Deltas
+	 * against snapshots we don't have are ignored; the server sends
+	 * a keyframe once it notices we aren't acknowledging anything.
+	 * @param zoneID -- zone the delta is for
+	 * @param frameNumber -- frame the delta was sent in
+	 * @param baseFrame -- frame of the snapshot the delta is against
+	 * @throws IOException
+	 */
+	private void receiveDelta(long zoneID, long frameNumber, long baseFrame) throws IOException {
+		if (zone == null || zone.getID() != zoneID)
+			return;
+		ZoneSnapshot baseline = snapshots.get(baseFrame);
+		if (baseline == null)
+			return;
+
+		ZoneSnapshot snapshot = baseline.readDelta(in);
+		snapshot.applyTo(zone, zoneSnapshot);
+		zoneSnapshot = snapshot;
+		snapshots.put(frameNumber, snapshot);
+		client.acknowledgeSnapshot(zoneID, frameNumber);
+	}
 
 	/**
 	 * Process data sent by the server
-	 * @throws IOException 
-	 * @throws ClassNotFoundException 
+	 * @throws IOException
+	 * @throws ClassNotFoundException
 	 */
 	private void processDownstream() throws IOException, ClassNotFoundException {
-		/* FIXME catch EOFException on this read ? */
-		Object readObj = in.readObject();
-		RenderPanel panel = frame.getRenderPanel();
-		if (readObj instanceof Zone) {
-			Zone newZone = (Zone)readObj;
-			panel.setZone(newZone);
-		} else if (readObj instanceof Inventory) {
-			Inventory newInv = (Inventory)readObj;
-			panel.setInventory(newInv);
-		} else if (readObj instanceof Event) {
-			Event packetType = (Event)readObj;
-			switch (packetType) {
-			case YOUR_CHARACTER_ID:
-				long ourID = in.readLong();
-				frame.getRenderPanel().setPlayer(ourID);
-				break;
-			case POPUP_MESSAGE:
-				String message = in.readUTF();
-				frame.showMessageBox(message);
-				break;
-			default:
-				System.err.println("Unhandled packet type "+packetType);
+		Event packetType = in.next();
+		if (packetType == null) {
+			/* server closed the connection */
+			shutdown();
+			return;
+		}
+		switch (packetType) {
+		case YOUR_CHARACTER_ID:
+			long ourID = in.readVarLong();
+			frame.getRenderPanel().setPlayer(ourID);
+			break;
+		case POPUP_MESSAGE:
+			String message = in.readString();
+			frame.showMessageBox(message);
+			break;
+		case ZONE_KEYFRAME:
+			long keyframe = in.readVarLong();
+			Object readObj = in.readSerialised();
+			if (!(readObj instanceof Zone)) {
+				System.err.println("Received malformed zone in keyframe");
 				break;
 			}
+			receiveKeyframe(keyframe, (Zone)readObj);
+			break;
+		case ZONE_DELTA:
+			long zoneID = in.readVarLong();
+			long deltaFrame = in.readVarLong();
+			long baseFrame = in.readVarLong();
+			receiveDelta(zoneID, deltaFrame, baseFrame);
+			break;
+		default:
+			System.err.println("Unhandled packet type "+packetType);
+			break;
 		}
 		frame.repaint();
 		frame.getInformationPanel().repaint();
 		return;
 	}
-	
+
 	public boolean isRunning(){
 		return this.running;
 	}
@@ -86,7 +153,7 @@ public class ClientThread extends Thread{
 			throw new NetworkError(e);
 		}
 	}
-	
+
 	/**
 	 * Notify the thread to stop running
 	 */
@@ -0,0 +1,31 @@
+package network.server;
+
+import network.Protocol.Event;
+
+/**
+ * A command from a client, decoded by the network thread and waiting
+ * to be carried out by the tick thread. Which of the arguments are
+ * used depends on the event.
+ */
+class Command {
+	/* connection the command arrived on */
+	final Connection connection;
+	final Event event;
+
+	/* a target character or entity, or the zone a snapshot was of */
+	long id;
+	/* an interaction of the target entity */
+	int interaction;
+	/* frame a snapshot was sent in */
+	long frame;
+	/* a point to move to */
+	int x;
+	int y;
+	/* a file to save to or load from */
+	String text;
+
+	Command(Connection connection, Event event) {
+		this.connection = connection;
+		this.event = event;
+	}
+}
@@ -0,0 +1,162 @@
+package network.server;
+
+import datastorage.XMLInterface;
+
+import java.awt.Point;
+import java.io.IOException;
+
+import model.Character;
+import model.Enemy;
+import model.Entity;
+import model.Player;
+import model.Interaction;
+import model.KeyGate;
+import network.MessageInput;
+import network.MessageOutput;
+import network.Protocol.Event;
+import util.Coord;
+
+/**
+ * Carries out the commands clients send to the server
+ * 
+ * @author David Phillips
+ *
+ */
+public class CommandHandler {
+	
+	/* back reference to our parent/controlling Server object */
+	private Server parentServer;
+	
+	/* buffer for replies to clients */
+	private MessageOutput message = new MessageOutput();
+	
+	/**
+	 * Construct a CommandHandler object
+	 * @param parentServer -- back reference to server object
+	 */
+	public CommandHandler(Server parentServer) {
+		this.parentServer = parentServer;
+	}
+	
+	/**
+	 * Decode a command sent by a client. Only reads the message, so
+	 * may be called by a network thread without any locking
+	 * @param connection -- connection the command arrived on
+	 * @param packetType -- the command
+	 * @param in -- the rest of the command's message
+	 * @return the command, or null if there is nothing to do
+	 * @throws IOException if the message is malformed
+	 */
+	public Command decode(Connection connection, Event packetType, MessageInput in) throws IOException {
+		/* spectators may only acknowledge what they are sent */
+		if (connection.getSlot() < 0 && packetType != Event.SNAPSHOT_ACK)
+			return null;
+		
+		Command command = new Command(connection, packetType);
+		switch (packetType) {
+		case GAME_LOAD:
+		case GAME_SAVE:
+			command.text = in.readString();
+			break;
+		case MOVE_TO_POINT:
+			command.x = in.readVarInt();
+			command.y = in.readVarInt();
+			break;
+		case INTERACT:
+			command.id = in.readVarLong();
+			command.interaction = in.readVarInt();
+			break;
+		case ATTACK:
+			command.id = in.readVarLong();
+			break;
+		case SNAPSHOT_ACK:
+			command.id = in.readVarLong();
+			command.frame = in.readVarLong();
+			break;
+		default:
+			break;
+		}
+		return command;
+	}
+	
+	/**
+	 * Carry out a command sent by a client. Must be called while
+	 * synchronised on the server.
+	 * @param command -- the decoded command
+	 * @throws IOException
+	 */
+	public void apply(Command command) throws IOException {
+		Connection connection = command.connection;
+		Player player = parentServer.getPlayer(connection.getSlot());
+		
+		switch (command.event) {
+		case GAME_LOAD:
+			String loadFile = command.text;
+			if (loadFile == null) {
+				System.err.println("Got null filename to load from; not trying to load");
+			}
+			parentServer.setWorld(XMLInterface.loadGame(loadFile));
+			break;
+		case GAME_SAVE:
+			String saveFile = command.text;
+			if (saveFile == null) {
+				System.err.println("Got null filename to save to; not trying to save");
+			}
+			XMLInterface.saveGame(parentServer.getWorld(), saveFile);
+			break;
+		case FORWARD:
+			player.moveForward();
+			break;
+		case BACKWARD:
+			player.moveBackwards();
+			break;
+		case MOVE_TO_POINT:
+			player.moveToPoint(new Point(command.x, command.y));
+			break;
+		case ROTATE_CLOCKWISE:
+			player.rotate(true);
+			break;
+		case ROTATE_ANTICLOCKWISE:
+			player.rotate(false);
+			break;
+		case INTERACT:
+			/* look up the interaction in the world; it is already
+			 * attached to the right entities, portals and zones */
+			Entity entity = player.getZone().getEntityFromID(command.id);
+			Interaction interaction = entity == null ? null : entity.getInteraction(command.interaction);
+			if (interaction == null) {
+				System.err.println("Received interact command for an interaction that doesn't exist");
+				break;
+			}
+			
+			String popup = interaction.execute(player);
+			
+			/* send any message from the interaction back to client */
+			if (popup != null && popup.length() != 0) {
+				message.begin(Event.POPUP_MESSAGE);
+				message.writeString(popup);
+				connection.send(message.toByteArray());
+			}
+			break;
+		case ATTACK:
+			long characterID = command.id;
+			Character target = player.getZone().getCharacterFromID(characterID);
+			if (target == null) {
+				System.err.println("Cannot find character with id "+characterID+", bail");
+				break;
+			}
+			if (!(target instanceof Enemy)) {
+				System.err.println("Received non-enemy character to attack. Violent sod tried to attack a"+target.getClass());
+				break;
+			}
+			player.attack((Enemy)target);
+			break;
+		case SNAPSHOT_ACK:
+			connection.acknowledge(command.id, command.frame);
+			break;
+		default:
+			System.err.println("Unhandled event in server event receiver: "+command.event);
+			break;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package network.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import network.MessageInput;
+import network.Protocol;
+import network.Protocol.Event;
+
+/**
+ * A single client's connection to the server. Reading and writing is
+ * done by the server's SelectorThread; other threads only ever queue
+ * messages to be written with send().
+ */
+public class Connection {
+	/* size of the read buffer, and so the largest message a client may
+	 * send. Clients only send commands and acks, far smaller than this;
+	 * one which sends a larger message is disconnected rather than
+	 * being given up to Protocol.MAX_MESSAGE_SIZE bytes of memory */
+	private static final int READ_BUFFER_SIZE = 4096;
+
+	/* most messages which may wait to be written; a client which
+	 * falls further behind than this is disconnected */
+	private static final int MAX_QUEUED = 64;
+
+	private Server server;
+	private SocketChannel channel;
+	private SelectionKey key;
+
+	/* player slot this client controls, or -1 for a spectator */
+	private int slot = -1;
+
+	/* has the client completed the handshake? */
+	private boolean joined;
+
+	/* bytes read but not yet made into whole messages */
+	private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private MessageInput in = new MessageInput();
+
+	/* messages waiting to be written, guarded by this */
+	private ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+
+	/* the queued zone state message, if it hasn't started being
+	 * written; guarded by this */
+	private ByteBuffer queuedState;
+
+	/* has more been queued than MAX_QUEUED? guarded by this */
+	private boolean overflowed;
+
+	/* zone state messages replaced before being written */
+	private volatile long droppedFrames;
+
+	/* the zone + frame of the last snapshot the client acknowledged,
+	 * and the frame of the last keyframe it was sent. Guarded by
+	 * the server */
+	private long ackedZone = -1;
+	private long ackedFrame;
+	private long keyframe;
+
+	/* the zone + version of the last state the client was sent,
+	 * guarded by the server */
+	private long sentZone = -1;
+	private long sentVersion;
+
+	/**
+	 * Construct a connection for a newly accepted client, and queue
+	 * the server's half of the handshake
+	 * @param server -- server the client connected to
+	 * @param channel -- the client's channel, in non-blocking mode
+	 * @param key -- the channel's key with the server's selector
+	 * @throws IOException
+	 */
+	protected Connection(Server server, SocketChannel channel, SelectionKey key) throws IOException {
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+
+		/* send the server's magic sequence + protocol version */
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream greeting = new DataOutputStream(bytes);
+		greeting.writeUTF(Protocol.SERVER_MAGIC);
+		greeting.writeByte(Protocol.VERSION);
+		outbound.add(ByteBuffer.wrap(bytes.toByteArray()));
+		key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Queue a message to be written to the client. May be called from
+	 * any thread; the message is written once the socket is ready, so
+	 * this never blocks on the network
+	 * @param message -- a framed message, which mustn't be modified afterwards
+	 */
+	public void send(byte[] message) {
+		synchronized (this) {
+			enqueue(ByteBuffer.wrap(message));
+		}
+		server.requestWrite(this);
+	}
+
+	/**
+	 * Queue the state of the client's zone to be written. Only the
+	 * newest state is worth having, so it replaces any state still
+	 * waiting to be written; a client which can't keep up is sent
+	 * fewer, fresher updates. May be called from any thread
+	 * @param message -- a framed keyframe or delta the client can apply
+	 * to the last snapshot it acknowledged, which mustn't be modified
+	 * afterwards
+	 */
+	public void sendState(byte[] message) {
+		synchronized (this) {
+			if (queuedState != null && unqueue(queuedState))
+				droppedFrames++;
+			ByteBuffer state = ByteBuffer.wrap(message);
+			/* only a state which made it into the queue can be replaced */
+			queuedState = enqueue(state) ? state : null;
+		}
+		server.requestWrite(this);
+	}
+
+	/**
+	 * Take a message which hasn't started being written off the queue
+	 * @param message -- the very buffer that was queued; buffers with
+	 * the same contents are left alone
+	 * @return whether the message was found
+	 */
+	private boolean unqueue(ByteBuffer message) {
+		/* newest messages are at the back, so look there first */
+		Iterator<ByteBuffer> it = outbound.descendingIterator();
+		while (it.hasNext()) {
+			if (it.next() == message) {
+				it.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Add a message to the back of the queue, unless too many are
+	 * already waiting
+	 * @param message -- the message to add
+	 * @return whether the message was queued
+	 */
+	private boolean enqueue(ByteBuffer message) {
+		if (outbound.size() >= MAX_QUEUED) {
+			/* the selector thread disconnects the client */
+			overflowed = true;
+			return false;
+		}
+		outbound.add(message);
+		return true;
+	}
+
+	/**
+	 * Read whatever the client has sent, handling any whole messages
+	 * @return false if the client has disconnected or sent garbage
+	 * @throws IOException
+	 */
+	protected boolean read() throws IOException {
+		if (channel.read(readBuffer) < 0)
+			return false;
+
+		readBuffer.flip();
+		boolean ok = joined ? readMessages() : readHandshake();
+		readBuffer.compact();
+
+		/* a full buffer holds part of a message too large to accept */
+		if (ok && !readBuffer.hasRemaining()) {
+			System.err.println("Client sent a message larger than "+READ_BUFFER_SIZE+" bytes, disconnecting client");
+			return false;
+		}
+		return ok;
+	}
+
+	/**
+	 * Check the client's half of the handshake, once it has all arrived
+	 * @return false if the handshake failed
+	 * @throws IOException
+	 */
+	private boolean readHandshake() throws IOException {
+		/* wait for the client's magic sequence + version */
+		if (readBuffer.remaining() < 2)
+			return true;
+		int length = readBuffer.getShort(readBuffer.position()) & 0xFFFF;
+		if (readBuffer.remaining() < 2 + length + 1)
+			return true;
+
+		byte[] magic = new byte[length];
+		readBuffer.getShort();
+		readBuffer.get(magic);
+		int version = readBuffer.get() & 0xFF;
+
+		/* did the client's response match the expected value? */
+		String response = new String(magic, StandardCharsets.UTF_8);
+		if (!response.equals(Protocol.CLIENT_MAGIC) || version != Protocol.VERSION) {
+			System.err.println("Magic phrase exchange failed, disconnecting client");
+			return false;
+		}
+		System.out.println("Magic phrase exchange succeeded");
+		joined = true;
+		server.join(this);
+
+		/* anything sent after the handshake is a message */
+		return readMessages();
+	}
+
+	/**
+	 * Handle every whole message in the read buffer
+	 * @return false if the client sent something malformed
+	 * @throws IOException
+	 */
+	private boolean readMessages() throws IOException {
+		Event event;
+		while ((event = in.next(readBuffer)) != null) {
+			if (!server.handle(this, event, in))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Write as much queued output as the socket will take
+	 * @throws IOException
+	 */
+	protected synchronized void write() throws IOException {
+		if (overflowed)
+			throw new IOException("Client fell too far behind");
+
+		while (!outbound.isEmpty()) {
+			ByteBuffer message = outbound.peek();
+			/* once started, the state has to be written in full */
+			if (message == queuedState)
+				queuedState = null;
+			channel.write(message);
+			if (message.hasRemaining())
+				return;
+			outbound.poll();
+		}
+
+		/* all written; stop waiting for the socket to be writable */
+		key.interestOps(SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Ask to be told when the socket is writable, if there is
+	 * anything to write. Only called by the selector thread
+	 */
+	protected synchronized void updateInterest() {
+		if (key.isValid() && (overflowed || !outbound.isEmpty()))
+			key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+
+	/**
+	 * Close the connection
+	 */
+	protected void close() {
+		key.cancel();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			System.err.println("Warning: failed to disconnect a client");
+		}
+	}
+
+	/**
+	 * @return the number of messages waiting to be written to the client
+	 */
+	public synchronized int getQueueDepth() {
+		return outbound.size();
+	}
+
+	/**
+	 * @return the number of zone states which were replaced by newer
+	 * ones before they could be written to the client
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * @return whether the client has completed the handshake
+	 */
+	public boolean isJoined() {
+		return joined;
+	}
+
+	/**
+	 * @return the player slot this client controls, or -1 for a spectator
+	 */
+	public int getSlot() {
+		return slot;
+	}
+
+	protected void setSlot(int slot) {
+		this.slot = slot;
+	}
+
+	/**
+	 * Record that the client has received and applied a snapshot.
+	 * Must be called while synchronised on the server.
+	 * @param zoneID -- zone the snapshot was of
+	 * @param frame -- frame the snapshot was sent in
+	 */
+	protected void acknowledge(long zoneID, long frame) {
+		/* acks can arrive out of date; only ever move forward */
+		if (ackedZone == zoneID && ackedFrame >= frame)
+			return;
+		ackedZone = zoneID;
+		ackedFrame = frame;
+	}
+
+	/**
+	 * Forget which snapshot the client last acknowledged, so it is
+	 * next sent a keyframe
+	 */
+	protected void resetAcknowledged() {
+		ackedZone = -1;
+		sentZone = -1;
+	}
+
+	/**
+	 * Record which state of a zone the client was last sent.
+	 * Must be called while synchronised on the server.
+	 * @param zoneID -- zone that was sent
+	 * @param version -- version of the zone when it was sent
+	 */
+	protected void setSent(long zoneID, long version) {
+		sentZone = zoneID;
+		sentVersion = version;
+	}
+
+	/**
+	 * Check whether the client has already been sent a state of a zone.
+	 * Must be called while synchronised on the server.
+	 * @param zoneID
+	 * @param version
+	 * @return true if the client was last sent that zone at that version
+	 */
+	protected boolean wasSent(long zoneID, long version) {
+		return sentZone == zoneID && sentVersion == version;
+	}
+
+	protected long getAckedZone() {
+		return ackedZone;
+	}
+
+	protected long getAckedFrame() {
+		return ackedFrame;
+	}
+
+	protected long getKeyframe() {
+		return keyframe;
+	}
+
+	protected void setKeyframe(long frame) {
+		this.keyframe = frame;
+	}
+}
@@ -0,0 +1,133 @@
+package network.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Thread doing all of the server's network I/O: accepting clients,
+ * handshaking with them, reading their commands and writing whatever
+ * has been queued for them. Sockets are non-blocking, so one thread
+ * serves any number of clients and a slow client holds up nobody.
+ */
+public class SelectorThread extends Thread {
+	/* keep running the selector loop? */
+	private volatile boolean isRunning = true;
+
+	private Server server;
+	private ServerSocketChannel serverChannel;
+	private Selector selector;
+
+	/* connections with output queued by other threads */
+	private Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Construct a SelectorThread accepting clients from a bound channel
+	 * @param server -- server to hand clients and their commands to
+	 * @param serverChannel -- bound listener channel
+	 * @throws IOException
+	 */
+	public SelectorThread(Server server, ServerSocketChannel serverChannel) throws IOException {
+		this.server = server;
+		this.serverChannel = serverChannel;
+		this.selector = Selector.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Note that a connection has output waiting, waking the selector
+	 * so it gets written. May be called from any thread
+	 * @param connection
+	 */
+	public void requestWrite(Connection connection) {
+		pendingWrites.add(connection);
+		selector.wakeup();
+	}
+
+	/**
+	 * Stop the thread after its current iteration
+	 */
+	public void shutdown() {
+		isRunning = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (isRunning) {
+				selector.select();
+
+				Connection pending;
+				while ((pending = pendingWrites.poll()) != null)
+					pending.updateInterest();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+
+					if (key.isAcceptable())
+						accept();
+					else
+						service(key);
+				}
+			}
+		} catch (IOException | ClosedSelectorException e) {
+			if (isRunning)
+				e.printStackTrace();
+		} finally {
+			try {
+				selector.close();
+			} catch (IOException e) {
+				/* don't care */
+			}
+		}
+	}
+
+	/**
+	 * Accept a waiting client
+	 * @throws IOException
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null)
+			return;
+		System.out.println("Accepted connection from "+channel.socket().getInetAddress());
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		Connection connection = new Connection(server, channel, key);
+		key.attach(connection);
+	}
+
+	/**
+	 * Read from and write to a client, disconnecting it on error
+	 * @param key
+	 */
+	private void service(SelectionKey key) {
+		Connection connection = (Connection)key.attachment();
+		try {
+			if (key.isReadable() && !connection.read()) {
+				server.disconnect(connection);
+				return;
+			}
+			if (key.isValid() && key.isWritable())
+				connection.write();
+		} catch (IOException e) {
+			/* expected if the server is stopping, and closed the channel */
+			if (isRunning)
+				System.err.println("Error communicating with client: "+e);
+			server.disconnect(connection);
+		}
+	}
+}
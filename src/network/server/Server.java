@@ -1,13 +1,17 @@
 package network.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.ObjectInputStream;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import model.World;
+import network.MessageInput;
+import network.MessageOutput;
 import network.Protocol;
 import network.Protocol.Event;
 import network.NetworkError;
@@ -15,17 +19,26 @@ import model.Player;
 
 public class Server {
 	
-	private ServerSocket sock;
+	private ServerSocketChannel sock;
 	private int port;
-	private Socket[] clientSocks;
-	private ObjectOutputStream[] outs;
-	private ObjectInputStream[] ins;
-	private int clientCount;
 	private World world;
+	
+	/* players clients can control, and the connection controlling each */
 	private Player[] players;
-	private ServerRecvThread[] workerThreads;
-	private TickThread tickThread;
-	private Thread sendThread;
+	private Connection[] slots;
+	
+	/* every client which has completed the handshake */
+	private List<Connection> connections = new ArrayList<>();
+	
+	private boolean stopped;
+	private SelectorThread selectorThread;
+	private CommandHandler commandHandler = new CommandHandler(this);
+	
+	/* commands decoded by the network thread, waiting to be carried
+	 * out by the tick thread in the order they arrived */
+	private Queue<Command> commands = new ConcurrentLinkedQueue<>();
+	private volatile TickThread tickThread;
+	private volatile ServerSendThread sendThread;
 	
 	/**
 	 * Simple constructor using default port number
@@ -39,30 +52,40 @@ public class Server {
 	 * @param port --- port number to listen on
 	 */
 	public Server(int port) {
+		this(port, 2);
+	}
+	
+	/**
+	 * Extended constructor taking custom port number and number of
+	 * players. The game starts once every player slot is taken; any
+	 * further clients become spectators
+	 * @param port --- port number to listen on
+	 * @param playerSlots --- number of players, at most the number the world has
+	 */
+	public Server(int port, int playerSlots) {
 		this.port = port;
-		clientCount = 0;
 		
 		/* FIXME HACK set up world and players */
 		world = World.firstLevel();
-		this.players = new Player[2];
-		players[0] = world.getPupo();
-		players[1] = world.getYelo();
-		
+		if (playerSlots < 1 || playerSlots > world.getPlayers().length)
+			throw new IllegalArgumentException("World has no room for "+playerSlots+" players");
+		this.players = Arrays.copyOf(world.getPlayers(), playerSlots);
+		this.slots = new Connection[playerSlots];
 	}
 	
 	/**
 	 * Initialise the server
-	 * 
+	 *
 	 * @throws NetworkError
 	 */
 	public void initialise() {
 		/* has the server already been initialised? */
-		if (sock != null && sock.isBound()) {
+		if (isBound()) {
 			return;
 		}
 		try {
-			sock = new ServerSocket();
-			sock.setReuseAddress(true);
+			sock = ServerSocketChannel.open();
+			sock.socket().setReuseAddress(true);
 			sock.bind(new InetSocketAddress(port));
 			System.out.println("Server listening on port "+port);
 			return;
@@ -74,13 +97,13 @@ public class Server {
 	
 	/**
 	 * Clean up resources allocated to the server
-	 * 
+	 *
 	 * @return true on success, false otherwise
-	 * @throws NetworkError 
+	 * @throws NetworkError
 	 */
 	private boolean cleanup() {
 		try {
-			if (sock != null && !sock.isClosed()) {
+			if (sock != null && sock.isOpen()) {
 				sock.close();
 			}
 			return true;
@@ -93,41 +116,9 @@ public class Server {
 	 * Check if the server's listener socket is bound
 	 * @return true if bound, false if unbound, closed, or no socket present
 	 */
-	synchronized public boolean isBound() {
-		return sock != null && !sock.isClosed() && sock.isBound();
-	}
-	
-	
-	/**
-	 * Perform a simple sanity-check handshake with a client attached
-	 * to a client socket based on the protocol set out in the network.Protocol
-	 * class
-	 * @param clientSocket -- client socket to handshake with
-	 * @return true if handshake succeeds, false otherwise
-	 * @throws IOException
-	 */
-	public boolean doHandshake(ObjectInputStream in, ObjectOutputStream out) throws IOException {
-		/* send the server's magic sequence and wait for a reply */
-		out.writeObject(Protocol.SERVER_MAGIC);
-		out.reset();
-		
-		/* receive the object from the other side, bailing if it cannot be reconstructed */
-		Object rawResponse = null;
-		try {
-			rawResponse = in.readObject();
-		} catch (ClassNotFoundException e) {
-			/* definitely not a String if ClassNotFound */
-			return false;
-		}
-		
-		/* check that the object is a String instance before casting */
-		if (!(rawResponse instanceof String))
-			return false;
-		
-		String response = (String)rawResponse;
-		
-		/* did the client's response match the expected value? */
-		return (response != null && response.equals(Protocol.CLIENT_MAGIC));
+	public boolean isBound() {
+		ServerSocketChannel s = sock;
+		return s != null && s.isOpen() && s.socket().isBound();
 	}
 	
 	
@@ -135,66 +126,42 @@ public class Server {
 	 * Run the server
 	 * When run, the server will bind a socket to the port
 	 * it was constructed with, and begin accepting client
-	 * connections, handshaking until it has fulfilled
+	 * connections, returning once it has fulfilled
 	 * the number of clients required to play a game
 	 */
 	public void run() {
-		/* FIXME magic constant 2 */
-		int totalPlayers = 2;
-		
-		clientSocks = new Socket[totalPlayers];
-		outs = new ObjectOutputStream[totalPlayers];
-		ins = new ObjectInputStream[totalPlayers];
-		
-		
 		/* initialise the main server listener socket */
 		initialise();
 		
-		/* main connection accept loop */
-		while (!sock.isClosed() && clientCount < clientSocks.length) {
-			try {
-				Socket client = sock.accept();
-				System.out.println("Accepted connection from "+client.getInetAddress());
-				outs[clientCount] = new ObjectOutputStream(client.getOutputStream());
-				ins[clientCount] = new ObjectInputStream(client.getInputStream());
-				
-				/* attempt basic sanity-check */
-				if (doHandshake(ins[clientCount], outs[clientCount])) {
-					System.out.println("Magic phrase exchange succeeded");
-					clientSocks[clientCount] = client;
-					outs[clientCount].writeObject(players[clientCount].getZone());
-					outs[clientCount].writeObject(Event.YOUR_CHARACTER_ID);
-					outs[clientCount].writeLong(players[clientCount].getID());
-					clientCount++;
-				} else {
-					System.err.println("Magic phrase exchange failed, disconnecting client");
-					client.close();
-				}
-			} catch (IOException e) {
-				System.err.println("Error accpeting client: "+e.getMessage());
-			}
-		}
-		if (sock.isClosed()) {
-			stop();
-			return;
+		/* clients are sent keyframes as they join, so the thread
+		 * which keeps track of what they were sent has to exist first */
+		this.sendThread = new ServerSendThread(this);
+		
+		/* accept + handshake with clients in the background */
+		try {
+			selectorThread = new SelectorThread(this, sock);
+		} catch (IOException e) {
+			throw new NetworkError(e);
 		}
-		System.out.println("All clients connected");
+		selectorThread.start();
 		
-		/* spawn two threads for each client */ 
-		workerThreads = new ServerRecvThread[totalPlayers];
-		for (int i = 0; i < totalPlayers; i++) {
-			/* create+start a receiving thread for this client */
-			ServerRecvThread recvThread = new ServerRecvThread(this, ins[i], outs[i], players[i]);
-			recvThread.start();
+		/* wait for every player slot to be taken */
+		synchronized (this) {
+			while (!stopped && getPlayerCount() < slots.length) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					break;
+				}
+			}
+			if (stopped || getPlayerCount() < slots.length)
+				return;
+			System.out.println("All clients connected");
 			
-			/* store reference to the thread away */
-			this.workerThreads[i] = recvThread;
+			this.tickThread = new TickThread(this);
+			this.sendThread.start();
+			this.tickThread.start();
 		}
-		
-		this.sendThread = new ServerSendThread(this, outs, players); 
-		this.tickThread = new TickThread(this);
-		this.sendThread.start();
-		this.tickThread.start();
 	}
 	
 	/**
@@ -202,62 +169,175 @@ public class Server {
 	 */
 	public void stop() {
 		System.out.print("Server stopping... ");
-		if (clientSocks != null) {
-			for (Socket client : clientSocks) {
-				if (client == null)
-					continue;
+		Connection[] clients;
+		synchronized (this) {
+			stopped = true;
+			clients = connections.toArray(new Connection[0]);
+			notifyAll();
+		}
+		if (selectorThread != null) {
+			selectorThread.shutdown();
+			/* the listener socket is only really closed once the
+			 * selector has let go of it */
+			if (selectorThread != Thread.currentThread()) {
 				try {
-					client.close();
-				} catch (IOException e) {
-					System.err.println("Warning: failed to disconnect a client");
+					selectorThread.join();
+				} catch (InterruptedException e) {
+					/* don't care */
 				}
 			}
 		}
+		for (Connection client : clients)
+			client.close();
+		
+		if (sendThread != null)
+			sendThread.setRunning(false);
+		if (tickThread != null)
+			tickThread.setRunning(false);
 		cleanup();
 		System.out.println("stopped");
 	}
 	
-	
-	protected void win() {
-		for (int i = 0; i < outs.length; i++) {
-			try {
-				outs[i].writeObject(Event.POPUP_MESSAGE);
-				outs[i].writeUTF("You're winner!");
-			} catch (IOException e) {
-				/* do no thing */
+	/**
+	 * Add a client which has completed the handshake to the game,
+	 * giving it a free player slot if there is one, and send it
+	 * the state of the zone it will see
+	 * @param connection
+	 * @throws IOException
+	 */
+	protected synchronized void join(Connection connection) throws IOException {
+		for (int i = 0; i < slots.length; i++) {
+			if (slots[i] == null) {
+				slots[i] = connection;
+				connection.setSlot(i);
+				break;
 			}
 		}
-		/* broadcast went out; stop. */
-		/* Actually, don't stop because the packet probably hasn't been flushed out of the socket */
-		/* FIXME implement ack packet for messages */
-		//stop();
+		connections.add(connection);
+		
+		Player player = getWatchedPlayer(connection);
+		MessageOutput message = new MessageOutput();
+		connection.sendState(sendThread.encodeJoinKeyframe(connection, player.getZone()));
+		connection.setSent(player.getZone().getID(), player.getZone().getVersion());
+		message.begin(Event.YOUR_CHARACTER_ID);
+		message.writeVarLong(player.getID());
+		connection.send(message.toByteArray());
+		notifyAll();
+	}
+	
+	/**
+	 * Queue a command sent by a client, to be carried out by the
+	 * tick thread. Doesn't lock anything, so the network thread
+	 * never waits for the world
+	 * @param connection -- connection the command arrived on
+	 * @param event -- the command
+	 * @param in -- the rest of the command's message
+	 * @return false if the message was malformed, true otherwise
+	 * @throws IOException
+	 */
+	protected boolean handle(Connection connection, Event event, MessageInput in) throws IOException {
+		Command command = commandHandler.decode(connection, event, in);
+		if (command != null) {
+			commands.add(command);
+			TickThread t = tickThread;
+			if (t != null)
+				t.wake();
+		}
+		return true;
+	}
+	
+	/**
+	 * Carry out every queued command, in the order they arrived.
+	 * Only called by the tick thread, while synchronised on the server
+	 * @return whether there were any commands
+	 * @throws IOException
+	 */
+	protected boolean applyCommands() throws IOException {
+		boolean any = false;
+		Command command;
+		while ((command = commands.poll()) != null) {
+			commandHandler.apply(command);
+			any = true;
+		}
+		return any;
+	}
+	
+	/**
+	 * Disconnect a client. The game can't go on without one of
+	 * its players, so if the client was a player the server stops
+	 * @param connection
+	 */
+	protected void disconnect(Connection connection) {
+		connection.close();
+		synchronized (this) {
+			/* already closed by stop() */
+			if (stopped)
+				return;
+			connections.remove(connection);
+		}
+		if (connection.getSlot() >= 0)
+			stop();
+	}
+	
+	/**
+	 * Note that the world may have changed, so that clients are
+	 * sent whatever changed straight away
+	 */
+	protected void stateChanged() {
+		ServerSendThread s = sendThread;
+		if (s != null)
+			s.wake();
+	}
+	
+	/**
+	 * Have a connection's queued output written
+	 * @param connection
+	 */
+	protected void requestWrite(Connection connection) {
+		if (selectorThread != null)
+			selectorThread.requestWrite(connection);
+	}
+	
+	protected synchronized void win() {
+		MessageOutput message = new MessageOutput();
+		try {
+			message.begin(Event.POPUP_MESSAGE);
+			message.writeString("You're winner!");
+			byte[] bytes = message.toByteArray();
+			for (Connection connection : connections)
+				connection.send(bytes);
+		} catch (IOException e) {
+			/* do no thing */
+		}
 	}
 	
 	/**
 	 * Wait for all clients to disconnect
 	 */
 	public void waitForDisconnect() {
-		/* wait for server threads to exit/error-out/whatever */
-		for (int i = 0; i < clientCount; i++) {
-			try {
-				workerThreads[i].join();
-			} catch (InterruptedException e) {
-				/* we don't really care */
-				e.printStackTrace();
-			}
+		/* wait for the network thread to exit/error-out/whatever */
+		try {
+			if (selectorThread != null)
+				selectorThread.join();
+		} catch (InterruptedException e) {
+			/* we don't really care */
+			e.printStackTrace();
 		}
 		
 		/* join the downlink thread */
 		try {
-			sendThread.join();
+			if (sendThread != null)
+				sendThread.join();
 		} catch(InterruptedException e) {
 			/* don't care */
 		}
 		
 		/* join the world tick thread */
 		try {
-			tickThread.setRunning(false);
-			tickThread.join();
+			if (tickThread != null) {
+				tickThread.setRunning(false);
+				tickThread.join();
+			}
 		} catch (InterruptedException e) {
 			/* don't care */
 		}
@@ -267,16 +347,55 @@ public class Server {
 	 * Get the number of client connections currently on the server
 	 * @return
 	 */
-	public int getConnectedCount() {
-		return clientCount; 
+	public synchronized int getConnectedCount() {
+		return connections.size();
+	}
+	
+	/**
+	 * Get the number of messages waiting to be written to clients
+	 * @return
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Connection c : getConnections())
+			depth += c.getQueueDepth();
+		return depth;
+	}
+	
+	/**
+	 * Get the number of zone states which were never written to a
+	 * client, because a newer state replaced them first
+	 * @return
+	 */
+	public long getDroppedFrames() {
+		long dropped = 0;
+		for (Connection c : getConnections())
+			dropped += c.getDroppedFrames();
+		return dropped;
+	}
+	
+	/**
+	 * Get the number of player slots which have been taken
+	 * @return
+	 */
+	public synchronized int getPlayerCount() {
+		int count = 0;
+		for (Connection c : slots) {
+			if (c != null)
+				count++;
+		}
+		return count;
 	}
 	
 	/**
 	 * Run the server standalone
-	 * @param args
+	 * @param args -- optionally, the number of players
 	 */
 	public static void main(String[] args) {
-		Server s = new Server();
+		int playerSlots = 2;
+		if (args.length > 0)
+			playerSlots = Integer.parseInt(args[0]);
+		Server s = new Server(Protocol.DEFAULT_PORT, playerSlots);
 		/* run server */
 		s.run();
 		s.waitForDisconnect();
@@ -284,7 +403,34 @@ public class Server {
 		/* stop + cleanup if not already done */
 		s.stop();
 	}
-
+	
+	/**
+	 * Get every client which has completed the handshake
+	 * @return
+	 */
+	protected synchronized Connection[] getConnections() {
+		return connections.toArray(new Connection[connections.size()]);
+	}
+	
+	/**
+	 * Get the player in a slot
+	 * @param slot
+	 * @return the player, or null if the slot is -1 (a spectator)
+	 */
+	protected synchronized Player getPlayer(int slot) {
+		return slot < 0 ? null : players[slot];
+	}
+	
+	/**
+	 * Get the player whose view a client is sent; spectators
+	 * watch the first player
+	 * @param connection
+	 * @return
+	 */
+	protected synchronized Player getWatchedPlayer(Connection connection) {
+		return players[Math.max(connection.getSlot(), 0)];
+	}
+	
 	/**
 	 * Get the world the server is serving to clients
 	 * @return
@@ -294,17 +440,16 @@ public class Server {
 	}
 	
 	/**
-	 * Set the world the server is serving to clients 
-	 * @param newWorld -- world to use 
+	 * Set the world the server is serving to clients
+	 * @param newWorld -- world to use
 	 */
-	protected void setWorld(World newWorld) {
+	protected synchronized void setWorld(World newWorld) {
 		this.world = newWorld;
-        players[0] = world.getPupo();
-        players[1] = world.getYelo();
-        ((ServerSendThread) this.sendThread).setCharacters(players);
-        ((ServerRecvThread) this.workerThreads[0]).setPlayer(players[0]);
-        ((ServerRecvThread) this.workerThreads[1]).setPlayer(players[1]);
-        System.out.println("World set");
-
-    }
+		this.players = Arrays.copyOf(world.getPlayers(), players.length);
+		if (this.sendThread != null) {
+			this.sendThread.reset();
+			this.sendThread.wake();
+		}
+		System.out.println("World set");
+	}
 }
@@ -1,52 +1,213 @@
 package network.server;
 
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
-import model.Character;
+import model.Zone;
+import model.ZoneSnapshot;
+import network.MessageOutput;
 import network.Protocol;
+import network.Protocol.Event;
 
 public class ServerSendThread extends Thread {
 	private Server parentServer;
-	private ObjectOutputStream[] outputStreams;
-	private Character[] characters;
-	
-	public ServerSendThread(Server parentServer, ObjectOutputStream[] outputStreams, Character[] characters) {
+
+	/* keep running the send loop? */
+	private volatile boolean isRunning = true;
+
+	/* may the world have changed since the last frame? guarded by this */
+	private boolean changed = true;
+
+	/* buffer messages are built in */
+	private MessageOutput message = new MessageOutput();
+
+	/* recent snapshots of each zone, to write deltas against */
+	private SnapshotHistory history = new SnapshotHistory(Protocol.SNAPSHOT_HISTORY);
+
+	/* frame number of the next update, guarded by the server. Each
+	 * client's first keyframe takes a frame of its own, so that the
+	 * client's ack of it is a baseline like any other frame's */
+	private long frame;
+
+	public ServerSendThread(Server parentServer) {
 		this.parentServer = parentServer;
-		this.outputStreams = outputStreams;
-		this.characters = characters;
 	}
-	
-	public void setCharacters(Character[] characters){
-		this.characters = characters;
+
+	/**
+	 * Send every client a keyframe next, since the world (and so
+	 * every zone) may have been replaced. Must be called while
+	 * synchronised on the server.
+	 */
+	public void reset(){
+		history.clear();
+		for (Connection connection : parentServer.getConnections())
+			connection.resetAcknowledged();
+	}
+
+	/**
+	 * Set whether the thread will continue running or not
+	 * @param isRunning
+	 */
+	public synchronized void setRunning(boolean isRunning) {
+		this.isRunning = isRunning;
+		notifyAll();
+	}
+
+	/**
+	 * Note that the world may have changed, so clients whose zone
+	 * did change are sent it straight away. May be called from any
+	 * thread
+	 */
+	public synchronized void wake() {
+		changed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Wait until the world may have changed, or the thread is stopped
+	 * @throws InterruptedException
+	 */
+	private synchronized void awaitChange() throws InterruptedException {
+		while (isRunning && !changed)
+			wait();
+		changed = false;
+	}
+
+	/**
+	 * Encode the keyframe a client is sent when it joins, in a frame
+	 * of its own, and remember its snapshot so that once the client
+	 * acknowledges it the next update can be a delta. Must be called
+	 * while synchronised on the server
+	 * @param connection -- the client which joined
+	 * @param zone -- zone the client sees
+	 * @return the framed message
+	 * @throws IOException
+	 */
+	protected byte[] encodeJoinKeyframe(Connection connection, Zone zone) throws IOException {
+		long joinFrame = frame++;
+		history.record(joinFrame, ZoneSnapshot.capture(zone));
+		connection.setKeyframe(joinFrame);
+		return encodeKeyframe(new MessageOutput(), joinFrame, zone);
+	}
+
+	/**
+	 * Encode a keyframe (a complete copy of a zone)
+	 * @param message -- buffer to build the message in
+	 * @param frame -- frame number of the keyframe
+	 * @param zone -- zone to send
+	 * @return the framed message
+	 * @throws IOException
+	 */
+	protected static byte[] encodeKeyframe(MessageOutput message, long frame, Zone zone) throws IOException {
+		/* zones are large and keyframes rare, so it isn't worth
+		 * hand-encoding every kind of tile, entity and item */
+		message.begin(Event.ZONE_KEYFRAME);
+		message.writeVarLong(frame);
+		message.writeSerialised(zone);
+		return message.toByteArray();
 	}
-	
+
+	/**
+	 * Decide how to send a client the state of its zone: as a delta
+	 * against the snapshot it last acknowledged if possible, or as a
+	 * keyframe. Must be called while synchronised on the server
+	 * @param connection -- the client
+	 * @param zone -- zone to send
+	 * @param broadcast -- messages describing the zone this frame
+	 * @return the update to send the client
+	 * @throws IOException
+	 */
+	private Update planUpdate(Connection connection, Zone zone, ZoneBroadcast broadcast) throws IOException {
+		ZoneSnapshot baseline = null;
+		if (connection.getAckedZone() == zone.getID())
+			baseline = history.get(zone.getID(), connection.getAckedFrame());
+
+		if (!broadcast.getSnapshot().isCompatible(baseline) || frame - connection.getKeyframe() >= Protocol.KEYFRAME_INTERVAL) {
+			connection.setKeyframe(frame);
+			/* a keyframe is a copy of the live zone, so it has to be
+			 * encoded while nothing can change it */
+			broadcast.keyframe();
+			return new Update(connection, broadcast, 0, null);
+		}
+		return new Update(connection, broadcast, connection.getAckedFrame(), baseline);
+	}
+
 	@Override
 	public void run() {
-		boolean running = true;
-		while(running) {
-			try {
-				/* send each client its zone information */
-				for (int i = 0; i < outputStreams.length; i++) {
-					ObjectOutputStream o = outputStreams[i];
-					
-					/* synchronise on the server instance to stop modification
-					 * by other threads, eg. world tick and client uplink */
-					synchronized (parentServer) {
-						/* send the applicable zone to the right player */
-						o.writeObject(characters[i].getZone());
-						
-						/* reset the object stream to avoid it being too "smart"
-						 * and caching zone state */
-						o.reset();
+		try {
+			while (isRunning) {
+				/* nothing is sent while nothing changes */
+				awaitChange();
+
+				/* zones already captured this frame; each message about
+				 * a zone is encoded once and shared by every client */
+				Map<Zone, ZoneBroadcast> captured = new IdentityHashMap<>();
+				List<Update> updates = new ArrayList<>();
+
+				/* snapshot every zone which changed since a client was last
+				 * sent it. Synchronise on the server instance to stop
+				 * modification by other threads, eg. world tick and client
+				 * uplink, but only for as long as capturing takes */
+				synchronized (parentServer) {
+					for (Connection connection : parentServer.getConnections()) {
+						Zone zone = parentServer.getWatchedPlayer(connection).getZone();
+						long version = zone.getVersion();
+						if (connection.wasSent(zone.getID(), version))
+							continue;
+
+						ZoneBroadcast broadcast = captured.get(zone);
+						if (broadcast == null) {
+							ZoneSnapshot snapshot = ZoneSnapshot.capture(zone);
+							broadcast = new ZoneBroadcast(frame, zone, snapshot, message);
+							captured.put(zone, broadcast);
+							history.record(frame, snapshot);
+						}
+						updates.add(planUpdate(connection, zone, broadcast));
+						connection.setSent(zone.getID(), version);
 					}
+					if (!captured.isEmpty())
+						frame++;
 				}
-				sleep(Protocol.UPDATE_DELAY);
-			} catch (InterruptedException | IOException e) {
-				e.printStackTrace();
-				running = false;
+
+				/* encode the deltas from the snapshots, which nothing else
+				 * touches, and queue them. Sending only queues the message,
+				 * so a slow client holds nobody up */
+				for (Update update : updates)
+					update.send();
 			}
+		} catch (InterruptedException | IOException e) {
+			e.printStackTrace();
+			parentServer.stop();
+		}
+	}
+
+	/**
+	 * A message to be sent to a client, decided on while the world
+	 * was locked and encoded once it no longer is
+	 */
+	private static class Update {
+		private final Connection connection;
+		private final ZoneBroadcast broadcast;
+		private final long baselineFrame;
+
+		/* snapshot to send a delta against, or null for a keyframe */
+		private final ZoneSnapshot baseline;
+
+		Update(Connection connection, ZoneBroadcast broadcast, long baselineFrame, ZoneSnapshot baseline) {
+			this.connection = connection;
+			this.broadcast = broadcast;
+			this.baselineFrame = baselineFrame;
+			this.baseline = baseline;
+		}
+
+		void send() throws IOException {
+			if (baseline == null)
+				connection.sendState(broadcast.keyframe());
+			else
+				connection.sendState(broadcast.delta(baselineFrame, baseline));
 		}
-		parentServer.stop();
 	}
 }
@@ -0,0 +1,68 @@
+package network.server;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import model.ZoneSnapshot;
+
+/**
+ * Remembers the most recent snapshots taken of each zone, so that
+ * deltas can be written against whichever one a client last
+ * acknowledged.
+ */
+class SnapshotHistory {
+	/* number of snapshots kept per zone */
+	private final int depth;
+
+	/* zone ID -> (frame -> snapshot), oldest frame first */
+	private final Map<Long, LinkedHashMap<Long, ZoneSnapshot>> zones = new HashMap<>();
+
+	/**
+	 * Construct a history keeping a number of snapshots per zone
+	 * @param depth -- snapshots to keep for each zone
+	 */
+	SnapshotHistory(int depth) {
+		this.depth = depth;
+	}
+
+	/**
+	 * Record the snapshot of a zone taken in a frame, forgetting
+	 * the oldest snapshot of that zone if there are too many
+	 * @param frame -- frame the snapshot was taken in
+	 * @param snapshot -- snapshot to remember
+	 */
+	void record(long frame, ZoneSnapshot snapshot) {
+		LinkedHashMap<Long, ZoneSnapshot> frames = zones.get(snapshot.getZoneID());
+		if (frames == null) {
+			frames = new LinkedHashMap<Long, ZoneSnapshot>() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, ZoneSnapshot> eldest) {
+					return size() > depth;
+				}
+			};
+			zones.put(snapshot.getZoneID(), frames);
+		}
+		frames.put(frame, snapshot);
+	}
+
+	/**
+	 * Get the snapshot of a zone taken in a frame
+	 * @param zoneID -- zone the snapshot is of
+	 * @param frame -- frame the snapshot was taken in
+	 * @return the snapshot, or null if it was never taken or has been forgotten
+	 */
+	ZoneSnapshot get(long zoneID, long frame) {
+		Map<Long, ZoneSnapshot> frames = zones.get(zoneID);
+		return frames == null ? null : frames.get(frame);
+	}
+
+	/**
+	 * Forget every snapshot, eg. when the world is replaced
+	 */
+	void clear() {
+		zones.clear();
+	}
+}
@@ -1,9 +1,14 @@
 package network.server;
 
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+
 import model.World;
 
 /**
- * Thread to tick the game world periodically
+ * Thread to tick the game world periodically, and carry out the
+ * commands clients send. It is the only thread which changes the world
  * 
  * @author David Phillips
  *
@@ -32,6 +37,7 @@ public class TickThread extends Thread {
 	 */
 	public synchronized void setRunning(boolean isRunning) {
 		this.isRunning = isRunning;
+		LockSupport.unpark(this);
 	}
 	
 	/**
@@ -42,23 +48,48 @@ public class TickThread extends Thread {
 		return isRunning;
 	}
 	
+	/**
+	 * Have the thread carry out queued commands straight away, rather
+	 * than at the next tick. May be called from any thread
+	 */
+	public void wake() {
+		LockSupport.unpark(this);
+	}
+	
 	@Override
 	public void run() {
-		World world = server.getWorld();
 		setRunning(true);
+		long nextTick = System.currentTimeMillis();
 		while (isRunning()) {
 			try {
 				synchronized (server) {
-					world.tick();
-					if (world.checkForGameWin()) {
-						server.win();
+					/* commands are carried out as soon as they arrive,
+					 * and always before the tick they arrived during */
+					boolean changed = server.applyCommands();
+					if (System.currentTimeMillis() >= nextTick) {
+						World world = server.getWorld();
+						/* zones are independent, so they tick in parallel */
+						if (world.getZones().length > 1)
+							world.tick(ForkJoinPool.commonPool());
+						else
+							world.tick();
+						if (world.checkForGameWin()) {
+							server.win();
+						}
+						nextTick = System.currentTimeMillis() + TICK_DELAY;
+						changed = true;
 					}
+					if (changed)
+						server.stateChanged();
 				}
-				sleep(TICK_DELAY);
-			} catch (InterruptedException e) {
+			} catch (IOException e) {
 				e.printStackTrace();
-				setRunning(false);
 			}
+			
+			/* sleep until the next tick, or until a command arrives */
+			long delay = nextTick - System.currentTimeMillis();
+			if (delay > 0)
+				LockSupport.parkNanos(this, delay * 1000000);
 		}
 	}
 }
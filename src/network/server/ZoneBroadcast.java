@@ -0,0 +1,84 @@
+package network.server;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import model.Zone;
+import model.ZoneSnapshot;
+import network.MessageOutput;
+import network.Protocol.Event;
+
+/**
+ * The messages describing one zone in one frame. Each message is
+ * encoded the first time a client needs it, and the same bytes are
+ * then queued for every other client needing it, so the cost of
+ * encoding grows with the number of zones being watched rather than
+ * the number of clients watching them.
+ */
+class ZoneBroadcast {
+	private final long frame;
+	private final Zone zone;
+	private final ZoneSnapshot snapshot;
+
+	/* buffer messages are built in, shared with the send thread */
+	private final MessageOutput message;
+
+	private byte[] keyframe;
+
+	/* frame of the baseline -> delta against it */
+	private final Map<Long, byte[]> deltas = new HashMap<>();
+
+	/**
+	 * Construct a broadcast of a zone's state
+	 * @param frame -- frame the state is sent in
+	 * @param zone -- zone being sent
+	 * @param snapshot -- snapshot of the zone taken this frame
+	 * @param message -- buffer to build messages in
+	 */
+	ZoneBroadcast(long frame, Zone zone, ZoneSnapshot snapshot, MessageOutput message) {
+		this.frame = frame;
+		this.zone = zone;
+		this.snapshot = snapshot;
+		this.message = message;
+	}
+
+	ZoneSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Get a keyframe (a complete copy) of the zone. The first call
+	 * encodes the live zone, so must be made while synchronised on
+	 * the server
+	 * @return the framed message, which mustn't be modified
+	 * @throws IOException
+	 */
+	byte[] keyframe() throws IOException {
+		if (keyframe == null)
+			keyframe = ServerSendThread.encodeKeyframe(message, frame, zone);
+		return keyframe;
+	}
+
+	/**
+	 * Get a delta of the zone against an earlier snapshot of it.
+	 * Only the snapshots are used, so the server needn't be locked
+	 * @param baselineFrame -- frame the baseline was taken in
+	 * @param baseline -- the baseline, which must be compatible
+	 * @return the framed message, which mustn't be modified
+	 * @throws IOException
+	 */
+	byte[] delta(long baselineFrame, ZoneSnapshot baseline) throws IOException {
+		byte[] delta = deltas.get(baselineFrame);
+		if (delta == null) {
+			message.begin(Event.ZONE_DELTA);
+			message.writeVarLong(zone.getID());
+			message.writeVarLong(frame);
+			message.writeVarLong(baselineFrame);
+			snapshot.writeDelta(baseline, message);
+			delta = message.toByteArray();
+			deltas.put(baselineFrame, delta);
+		}
+		return delta;
+	}
+}
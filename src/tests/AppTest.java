@@ -30,8 +30,12 @@ public class AppTest
 		  GameTests.class,
 		  InventoryTests.class,
 		  ItemTests.class,
+		  LongMapTests.class,
 		  NetworkTests.class,
 		  PointDTest.class,
-		  PositionTransformationTest.class);
+		  PositionTransformationTest.class,
+		  ProtocolTests.class,
+		  SnapshotTests.class,
+		  TimerWheelTests.class);
     }
 }
@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Test;
 
@@ -71,6 +73,21 @@ public class DataStorageTests extends TestCase {
 		assertEquals(yelo, importedYelo);
 	}
 	
+	@Test
+	public void testMovedCharacterStorage(){
+		Zone zone = new Zone("zone", TestUtil.generateTiles(5,5));
+		Player pupo = new Player(zone, new Coord(Direction.of(Direction.NORTH), new Point(1,1)), true);
+		zone.addCharacter(pupo);
+		assertTrue(pupo.moveIn(Direction.of(Direction.EAST)));
+		pupo.rotate(true);
+		
+		XMLInterface.saveToFile(pupo, new File("testxml.xml"));
+		Player importedPupo = XMLInterface.loadFromFile(new Player.Factory(new Zone[]{ zone }), new File("testxml.xml"));
+		assertEquals(new Point(2,1), importedPupo.getCoord().getPoint());
+		assertEquals(Direction.of(Direction.EAST), importedPupo.getCoord().getFacing());
+		deleteTestXMLFile();
+	}
+	
 	@Test
 	public void testCoinStorage(){
 		Coin coin = new Coin();
@@ -144,6 +161,29 @@ public class DataStorageTests extends TestCase {
 		assertEquals(world, importedWorld);
 	}
 	
+	@Test
+	public void testLoadedEntityIDs(){
+		XMLInterface.saveToFile(World.firstLevel(), new File("testxml.xml"));
+		World importedWorld = XMLInterface.loadFromFile(new World.Factory(), new File("testxml.xml"));
+		deleteTestXMLFile();
+		
+		// Deltas find entities by ID, so loaded entities each need their own
+		int count = 0;
+		Set<Long> ids = new HashSet<Long>();
+		for(Zone zone : importedWorld.getZones()){
+			for(Entity e : zone.getEntities()){
+				ids.add(e.getID());
+				count++;
+			}
+		}
+		assertTrue(count > 1);
+		assertEquals(count, ids.size());
+		
+		Zone zone = importedWorld.getZones()[0];
+		Entity later = new Furniture(zone, new Coord(Direction.of(Direction.NORTH), new Point(1,1)), null, "table");
+		assertFalse(ids.contains(later.getID()));
+	}
+	
 	public void deleteTestXMLFile(){
 		try {
 			Files.deleteIfExists(FileSystems.getDefault().getPath("testxml.xml"));
@@ -1,8 +1,16 @@
 package tests;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+
 import org.junit.Test;
 
 import junit.framework.TestCase;
+import util.Coord;
 import util.Direction;
 
 public class DirectionTests extends TestCase {
@@ -37,4 +45,42 @@ public class DirectionTests extends TestCase {
 		assertEquals(Direction.oppositeDirection(s), n);
 		assertEquals(Direction.oppositeDirection(w), e);
 	}
+	
+	@Test
+	public void testOfIsShared() {
+		assertSame(Direction.of(Direction.NORTH), Direction.of(Direction.NORTH));
+		assertEquals(n, Direction.of(Direction.NORTH));
+		assertSame(Direction.of(Direction.SOUTH), Direction.oppositeDirection(n));
+		try {
+			Direction.of(4);
+			fail("4 isn't a direction");
+		} catch (IllegalArgumentException expected) {}
+	}
+	
+	@Test
+	public void testRotate() {
+		assertSame(Direction.of(Direction.EAST), n.rotate(true));
+		assertSame(Direction.of(Direction.WEST), n.rotate(false));
+		assertSame(Direction.of(Direction.NORTH), w.rotate(true));
+		assertEquals(1, e.dx());
+		assertEquals(0, e.dy());
+		assertEquals(-1, n.dy());
+	}
+	
+	@Test
+	public void testSerialisedFormUnchanged() {
+		// Directions and coords saved before they became immutable must still load
+		assertEquals(-1244685970412015057L, ObjectStreamClass.lookup(Direction.class).getSerialVersionUID());
+		assertEquals(4215280624807249982L, ObjectStreamClass.lookup(Coord.class).getSerialVersionUID());
+	}
+	
+	@Test
+	public void testSerialisedDirectionsAreShared() throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(w);
+		out.close();
+		Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+		assertSame(Direction.of(Direction.WEST), read);
+	}
 }
@@ -1,6 +1,7 @@
 package tests;
 
 import java.awt.Point;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
@@ -8,6 +9,7 @@ import junit.framework.TestCase;
 import model.FloorTile;
 import model.Furniture;
 import model.Gate;
+import model.Inspect;
 import model.Interactable;
 import model.Interaction;
 import model.Item;
@@ -15,11 +17,15 @@ import model.Key;
 import model.KeyGate;
 import model.Player;
 import model.Portal;
+import model.Slime;
 import model.Tile;
+import model.TileType;
 import model.WallTile;
 import model.World;
 import model.Zone;
 import model.Character;
+import model.Enemy;
+import model.EnemyAI;
 import util.Coord;
 import util.Direction;
 import util.PointD;
@@ -69,6 +75,330 @@ public class GameTests extends TestCase {
 		assertEquals(new Point(3,4), pupo.getCoord().getPoint());
 	}
 
+	@Test
+	public void testPathfindingLargeZone(){
+		// 512x512 floor split by a wall down the middle with a gap at the bottom
+		int size = 512;
+		Tile[][] tiles = new Tile[size][size];
+		for(int y = 0; y < size; y++){
+			for(int x = 0; x < size; x++){
+				if(x == size/2 && y < size - 1)
+					tiles[y][x] = new WallTile(new Point(x,y));
+				else
+					tiles[y][x] = new FloorTile(new Point(x,y));
+			}
+		}
+		Zone zone = new Zone("bigZone", tiles);
+
+		Point start = new Point(0,0);
+		Point end = new Point(size - 1, 0);
+		Direction[] path = zone.getPath(start, end);
+		assertNotNull(path);
+		// Down to the gap, across, and back up
+		assertEquals(2*(size - 1) + (size - 1), path.length);
+		Point p = new Point(start);
+		for(Direction d : path){
+			p = Direction.move(p, d, 1);
+			assertFalse(zone.checkForObstruction(p));
+		}
+		assertEquals(end, p);
+
+		// Searches reuse their scratch space, so a second one mustn't see the first
+		assertEquals(3, zone.getPath(new Point(0,0), new Point(2,1)).length);
+		assertEquals(0, zone.getPath(start, start).length);
+
+		zone.setTile(new Point(size/2, size - 1), new WallTile(new Point(size/2, size - 1)));
+		assertNull(zone.getPath(start, end));
+		assertNull(zone.getPath(start, new Point(size/2, 0)));
+	}
+
+	@Test
+	public void testMoveToPointAroundNewObstacles(){
+		// 20x20 open floor
+		Tile[][] tiles = new Tile[20][20];
+		for(int y = 0; y < 20; y++){
+			for(int x = 0; x < 20; x++){
+				tiles[y][x] = new FloorTile(new Point(x,y));
+			}
+		}
+		Zone zone = new Zone("open", tiles);
+		Player pupo = new Player(zone, new Coord(new Direction(Direction.EAST), new Point(0,5)), true);
+		zone.addCharacter(pupo);
+
+		Point end = new Point(19,5);
+		pupo.moveToPoint(end);
+		for(int i = 0; i < 3; i++)
+			pupo.tick();
+		assertEquals(new Point(4,5), pupo.getCoord().getPoint());
+
+		// Block the straight line ahead after the route has been planned
+		zone.addEntity(new Furniture(zone, new Coord(new Direction(Direction.NORTH), new Point(10,5)), null, "crate"));
+		int ticks = 0;
+		for(; ticks < 30 && !pupo.getCoord().getPoint().equals(end); ticks++)
+			pupo.tick();
+		assertEquals(end, pupo.getCoord().getPoint());
+		// Straight there, plus one step around the crate and one back
+		assertEquals(15 + 2, ticks);
+
+		// Wall off the way back completely; the player gives up
+		pupo.moveToPoint(new Point(0,5));
+		for(int y = 0; y < 20; y++)
+			zone.setTile(new Point(15,y), new WallTile(new Point(15,y)));
+		for(int i = 0; i < 5; i++)
+			pupo.tick();
+		assertFalse(pupo.isBusy());
+		assertEquals(new Point(18,5), pupo.getCoord().getPoint());
+	}
+
+	@Test
+	public void testFlowFieldsLeadToTarget(){
+		// 10x10 open floor with a wall across x = 5 from y = 0 to y = 8
+		Tile[][] tiles = new Tile[10][10];
+		for(int y = 0; y < 10; y++){
+			for(int x = 0; x < 10; x++){
+				if(x == 5 && y < 9)
+					tiles[y][x] = new WallTile(new Point(x,y));
+				else
+					tiles[y][x] = new FloorTile(new Point(x,y));
+			}
+		}
+		Zone zone = new Zone("field", tiles);
+		Point target = new Point(9,0);
+		assertEquals(9 + 9 + 0 + 9, zone.getDistanceTo(new Point(0,0), target));
+		assertEquals(-1, zone.getDistanceTo(new Point(5,0), target));
+		assertNull(zone.getStepToward(target, target));
+
+		// Several chasers all reach the target by following the same field
+		Slime[] slimes = new Slime[3];
+		for(int i = 0; i < slimes.length; i++){
+			slimes[i] = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(0, i*3)));
+			zone.addCharacter(slimes[i]);
+		}
+		for(int step = 0; step < 40; step++){
+			for(Slime s : slimes){
+				Point at = s.getCoord().getPoint();
+				Direction d = zone.getStepToward(at, target);
+				if(d == null) continue;
+				int before = zone.getDistanceTo(at, target);
+				assertTrue(s.moveIn(d));
+				assertEquals(before - 1, zone.getDistanceTo(s.getCoord().getPoint(), target));
+			}
+		}
+		// Only one can stand on the target; the others wait next to it
+		int onTarget = 0;
+		for(Slime s : slimes){
+			if(s.getCoord().getPoint().equals(target)) onTarget++;
+			assertTrue(zone.getDistanceTo(s.getCoord().getPoint(), target) <= 2);
+		}
+		assertEquals(1, onTarget);
+
+		// Closing the gap under the wall cuts the target off
+		zone.setTile(new Point(5,9), new WallTile(new Point(5,9)));
+		assertEquals(-1, zone.getDistanceTo(new Point(0,0), target));
+	}
+
+	@Test
+	public void testMoveToPointThroughPortals(){
+		// Three rooms in a row, joined by portals: a -> b -> c
+		Zone a = room("a", 5, 5);
+		Zone b = room("b", 7, 3);
+		Zone c = room("c", 5, 5);
+		a.addEntity(new Portal(a, new Coord(new Direction(Direction.NORTH), new Point(3,1)), "ab"));
+		b.addEntity(new Portal(b, new Coord(new Direction(Direction.NORTH), new Point(1,1)), "ab"));
+		b.addEntity(new Portal(b, new Coord(new Direction(Direction.NORTH), new Point(5,1)), "bc"));
+		c.addEntity(new Portal(c, new Coord(new Direction(Direction.NORTH), new Point(1,1)), "bc"));
+		Player pupo = new Player(a, new Coord(new Direction(Direction.NORTH), new Point(1,3)), true);
+		Player yelo = new Player(c, new Coord(new Direction(Direction.NORTH), new Point(1,3)), false);
+		a.addCharacter(pupo);
+		c.addCharacter(yelo);
+		new World("portals", new Zone[]{ a, b, c }, pupo, yelo);
+
+		Point end = new Point(3,3);
+		pupo.moveToPoint(c, end);
+		for(int i = 0; i < 30 && pupo.isBusy() && !end.equals(pupo.getCoord().getPoint()); i++)
+			pupo.tick();
+		assertSame(c, pupo.getZone());
+		assertEquals(end, pupo.getCoord().getPoint());
+
+		// Nowhere to go inside a wall
+		pupo.moveToPoint(a, new Point(0,2));
+		assertFalse(pupo.isBusy());
+		assertSame(c, pupo.getZone());
+	}
+
+	@Test
+	public void testMoveThroughPortalsWhileTickingInParallel(){
+		Zone a = room("a", 5, 5);
+		Zone b = room("b", 7, 3);
+		Zone c = room("c", 5, 5);
+		a.addEntity(new Portal(a, new Coord(Direction.of(Direction.NORTH), new Point(3,1)), "ab"));
+		b.addEntity(new Portal(b, new Coord(Direction.of(Direction.NORTH), new Point(1,1)), "ab"));
+		b.addEntity(new Portal(b, new Coord(Direction.of(Direction.NORTH), new Point(5,1)), "bc"));
+		c.addEntity(new Portal(c, new Coord(Direction.of(Direction.NORTH), new Point(1,1)), "bc"));
+		Player pupo = new Player(a, new Coord(Direction.of(Direction.NORTH), new Point(1,3)), true);
+		Player yelo = new Player(c, new Coord(Direction.of(Direction.NORTH), new Point(1,3)), false);
+		a.addCharacter(pupo);
+		c.addCharacter(yelo);
+		World world = new World("portals", new Zone[]{ a, b, c }, pupo, yelo);
+
+		// Routes planned on the way, which read other zones, wait
+		// until every zone has ticked
+		Point end = new Point(3,3);
+		pupo.moveToPoint(c, end);
+		ForkJoinPool pool = new ForkJoinPool(3);
+		try{
+			for(int i = 0; i < 30 && pupo.isBusy(); i++)
+				world.tick(pool);
+		} finally {
+			pool.shutdown();
+		}
+		assertSame(c, pupo.getZone());
+		assertEquals(end, pupo.getCoord().getPoint());
+	}
+
+	@Test
+	public void testPortalPairing(){
+		// Thousands of portals, each in a's interior paired with the same tile in b
+		int size = 72;
+		Zone a = room("a", size, size);
+		Zone b = room("b", size, size);
+		Portal[] as = new Portal[(size - 2) * (size - 2)];
+		Portal[] bs = new Portal[as.length];
+		for(int i = 0; i < as.length; i++){
+			Point p = new Point(1 + i % (size - 2), 1 + i / (size - 2));
+			as[i] = new Portal(a, new Coord(Direction.of(Direction.NORTH), p), "p" + i);
+			bs[i] = new Portal(b, new Coord(Direction.of(Direction.NORTH), p), "p" + i);
+			a.addEntity(as[i]);
+			b.addEntity(bs[i]);
+		}
+		Player pupo = new Player(a, new Coord(Direction.of(Direction.NORTH), new Point(0,0)), true);
+		Player yelo = new Player(b, new Coord(Direction.of(Direction.NORTH), new Point(0,0)), false);
+		new World("portals", new Zone[]{ a, b }, pupo, yelo);
+
+		for(int i = 0; i < as.length; i++){
+			assertSame(bs[i], as[i].getPairPortal());
+			assertSame(as[i], bs[i].getPairPortal());
+		}
+
+		// A portal with nothing to pair with
+		Zone c = room("c", 5, 5);
+		c.addEntity(new Portal(c, new Coord(Direction.of(Direction.NORTH), new Point(2,2)), "lonely"));
+		try{
+			new World("orphan", new Zone[]{ c }, pupo, yelo);
+			fail("A portal without a pair should be rejected");
+		}catch(IllegalStateException expected){}
+
+		// Three portals sharing an ID
+		Zone d = room("d", 5, 5);
+		for(int x = 1; x <= 3; x++)
+			d.addEntity(new Portal(d, new Coord(Direction.of(Direction.NORTH), new Point(x,2)), "crowded"));
+		try{
+			new World("duplicate", new Zone[]{ d }, pupo, yelo);
+			fail("More than two portals with the same ID should be rejected");
+		}catch(IllegalStateException expected){}
+	}
+
+	@Test
+	public void testEnemiesChasePlayers(){
+		Zone zone = room("lair", 12, 12);
+		Player pupo = new Player(zone, new Coord(new Direction(Direction.NORTH), new Point(10,10)), true);
+		zone.addCharacter(pupo);
+		Slime near = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(5,5)));
+		Slime far = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(1,1)));
+		zone.addCharacter(near);
+		zone.addCharacter(far);
+
+		for(int i = 0; i < 15; i++)
+			zone.tick();
+		assertEquals(Enemy.Behaviour.ATTACK, near.getBehaviour());
+		assertSame(pupo, near.getTarget());
+		Point at = near.getCoord().getPoint();
+		assertEquals(1, Math.abs(at.x - 10) + Math.abs(at.y - 10));
+		// Too far away to notice
+		assertNull(far.getTarget());
+		assertTrue(zone.getEnemyAI().getTicks() == 15);
+		assertTrue(zone.getEnemyAI().getMaxTickNanos() >= zone.getEnemyAI().getLastTickNanos());
+	}
+
+	@Test
+	public void testOnlyDueCharactersTick(){
+		Zone zone = room("quiet", 8, 8);
+		final int[] ticked = new int[1];
+		Player pupo = new Player(zone, new Coord(new Direction(Direction.NORTH), new Point(1,1)), true){
+			@Override
+			public void tick(){
+				ticked[0]++;
+				super.tick();
+			}
+		};
+		zone.addCharacter(pupo);
+
+		// Standing still, the player is never ticked
+		for(int i = 0; i < 5; i++)
+			zone.tick();
+		assertEquals(0, ticked[0]);
+
+		// Walking 4 tiles takes the call itself and 3 ticks, after
+		// which the player stops asking to be ticked
+		pupo.moveToPoint(new Point(1,5));
+		for(int i = 0; i < 10; i++)
+			zone.tick();
+		assertEquals(new Point(1,5), pupo.getCoord().getPoint());
+		assertEquals(1 + 3, ticked[0]);
+
+		final int[] ran = new int[1];
+		zone.schedule(3, new Runnable(){
+			@Override
+			public void run(){
+				ran[0]++;
+			}
+		});
+		zone.tick();
+		zone.tick();
+		assertEquals(0, ran[0]);
+		zone.tick();
+		assertEquals(1, ran[0]);
+	}
+
+	@Test
+	public void testEnemyDecisionsTakeTurns(){
+		Zone zone = room("crowd", 12, 12);
+		Player pupo = new Player(zone, new Coord(new Direction(Direction.NORTH), new Point(6,6)), true);
+		zone.addCharacter(pupo);
+		for(int x = 2; x < 5; x++)
+			zone.addCharacter(new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(x,2))));
+		EnemyAI ai = zone.getEnemyAI();
+		// Nothing fits in the budget, so one enemy decides per tick
+		ai.setBudgetNanos(0);
+
+		for(int tick = 1; tick <= 3; tick++){
+			zone.tick();
+			assertEquals(1, ai.getLastDecisions());
+			assertEquals(2, ai.getLastDeferred());
+			int hunting = 0;
+			for(Character c : zone.getCharacters()){
+				if(c instanceof Enemy && ((Enemy)c).getTarget() != null) hunting++;
+			}
+			assertEquals(tick, hunting);
+		}
+	}
+
+	/**
+	 * Makes a zone of floor surrounded by a wall one tile thick.
+	 */
+	private Zone room(String name, int width, int height){
+		Tile[][] tiles = new Tile[height][width];
+		for(int y = 0; y < height; y++){
+			for(int x = 0; x < width; x++){
+				if(x == 0 || y == 0 || x == width - 1 || y == height - 1)
+					tiles[y][x] = new WallTile(new Point(x,y));
+				else
+					tiles[y][x] = new FloorTile(new Point(x,y));
+			}
+		}
+		return new Zone(name, tiles);
+	}
+
 	@Test
 	public void testKeyGate(){
 		World world = generateWorld2();
@@ -123,6 +453,192 @@ public class GameTests extends TestCase {
 		
 	}
 
+	@Test
+	public void testInteractionsById(){
+		Zone zone = room("hall", 5, 5);
+		Furniture chest = new Furniture(zone, new Coord(Direction.of(Direction.NORTH), new Point(2,2)), null, "A chest");
+		Interaction look = new Inspect("Looks sturdy");
+		Interaction peek = new Inspect("Locked");
+		chest.addInteraction(look);
+		chest.addInteraction(peek);
+		zone.addEntity(chest);
+
+		// IDs are unique on the entity and survive other interactions being removed
+		int lookID = look.getID();
+		int peekID = peek.getID();
+		assertTrue(lookID != peekID);
+		assertTrue(chest.removeInteraction(chest.getInteraction(lookID)));
+		Interaction again = new Inspect("Still sturdy");
+		chest.addInteraction(again);
+		assertNull(chest.getInteraction(lookID));
+		assertSame(peek, chest.getInteraction(peekID));
+		assertSame(again, chest.getInteraction(again.getID()));
+
+		// What the server does with an entity ID and interaction ID from a client
+		assertSame(peek, zone.getEntityFromID(chest.getID()).getInteraction(peekID));
+		assertNull(zone.getEntityFromID(chest.getID()).getInteraction(-1));
+	}
+
+	@Test
+	public void testParallelTick(){
+		World serial = generateWorld2();
+		World parallel = generateWorld2();
+		for(World world : new World[]{ serial, parallel }){
+			for(Player p : world.getPlayers()){
+				p.getZone().addCharacter(p);
+			}
+			world.getPupo().moveToPoint(new Point(1,3));
+			world.getYelo().moveToPoint(new Point(2,1));
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try{
+			for(int i = 0; i < 4; i++){
+				serial.tick();
+				parallel.tick(pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		assertEquals(new Point(1,3), parallel.getPupo().getCoord().getPoint());
+		assertEquals(new Point(2,1), parallel.getYelo().getCoord().getPoint());
+		assertEquals(serial.getPupo().getCoord(), parallel.getPupo().getCoord());
+		assertEquals(serial.getYelo().getCoord(), parallel.getYelo().getCoord());
+		assertFalse(parallel.getZones()[0].isTickingInParallel());
+	}
+
+	@Test
+	public void testDormantZones(){
+		World world = generateWorld2();
+		Player pupo = world.getPupo();
+		Zone first = world.getZones()[0];
+		Zone second = world.getZones()[1];
+		first.addCharacter(pupo);
+
+		// nobody is in the second zone, so it sleeps
+		world.tick();
+		assertEquals(Zone.Activity.ACTIVE, first.getActivity());
+		assertEquals(Zone.Activity.DORMANT, second.getActivity());
+
+		// walk through the portal, waking the second zone
+		pupo.moveForward();
+		Interactable portal = first.getInteractable(pupo, Direction.move(pupo.getCoord().getPoint(), pupo.getCoord().getFacing(), 1));
+		for(Interaction i : portal.getInteractions()){
+			if(i.getText().equals("Use Portal"))
+				i.execute(pupo);
+		}
+		assertEquals(second, pupo.getZone());
+		assertEquals(Zone.Activity.WAKING, second.getActivity());
+
+		world.tick();
+		assertEquals(Zone.Activity.DORMANT, first.getActivity());
+		assertEquals(Zone.Activity.ACTIVE, second.getActivity());
+	}
+
+	@Test
+	public void testWakingZoneDoesNotReplayMissedTicks(){
+		Zone a = room("awake", 8, 8);
+		Zone b = room("asleep", 8, 20);
+		Player pupo = new Player(a, new Coord(Direction.of(Direction.NORTH), new Point(1,1)), true);
+		Player yelo = new Player(b, new Coord(Direction.of(Direction.SOUTH), new Point(1,1)), false);
+		World world = new World("sleepy", new Zone[]{ a, b }, pupo, yelo);
+		a.addCharacter(pupo);
+		for(int i = 0; i < 40; i++)
+			world.tick();
+		assertEquals(Zone.Activity.DORMANT, b.getActivity());
+
+		// The first step happens straight away, and one more each tick
+		b.addCharacter(yelo);
+		yelo.moveToPoint(new Point(1,18));
+		assertEquals(new Point(1,2), yelo.getCoord().getPoint());
+		world.tick();
+		assertEquals(new Point(1,3), yelo.getCoord().getPoint());
+		world.tick();
+		assertEquals(new Point(1,4), yelo.getCoord().getPoint());
+	}
+
+	@Test
+	public void testPositionalLookupsFollowMoves(){
+		World world = generateWorld1();
+		Zone zone = world.getZones()[0];
+		Player pupo = world.getPupo();
+		zone.addCharacter(pupo);
+		Slime slime = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(4,4)));
+		zone.addCharacter(slime);
+		Key key = new Key(new Point(1,3), "blue");
+		zone.addItem(key);
+
+		assertEquals(pupo, zone.getCharacter(new Point(1,1)));
+		assertTrue(zone.checkForObstruction(new Point(2,3))); // furniture
+		assertEquals(slime, zone.getEnemy(new Point(4,4)));
+		assertEquals(key, zone.getItem(new Point(1,3)));
+
+		// walking onto the key picks it up
+		assertTrue(pupo.moveForward());
+		assertTrue(pupo.moveForward());
+		assertNull(zone.getCharacter(new Point(1,1)));
+		assertEquals(pupo, zone.getCharacter(new Point(1,3)));
+		assertNull(zone.getItem(new Point(1,3)));
+
+		// and dropping it puts it back on the floor
+		assertTrue(pupo.dropItem(key));
+		assertEquals(key, zone.getItem(new Point(1,4)));
+
+		slime.damage(slime.getRemainingHealth());
+		assertNull(zone.getEnemy(new Point(4,4)));
+		assertFalse(zone.getCharacters().contains(slime));
+		assertNull(zone.getCharacter(new Point(4,4)));
+	}
+
+	@Test
+	public void testTileLayer(){
+		Zone zone = generateWorld1().getZones()[0];
+		Point corner = new Point(0,0);
+		Point middle = new Point(3,3);
+		assertEquals(TileType.WALL, zone.getTileType(corner));
+		assertEquals(TileType.FLOOR, zone.getTileType(middle));
+		assertEquals(new WallTile(corner), zone.getTile(corner));
+		assertEquals(7 * 7, zone.getTiles().size());
+
+		zone.setTile(middle, new WallTile(middle));
+		assertEquals(TileType.WALL, zone.getTileType(middle));
+		assertTrue(zone.checkForObstruction(middle));
+		assertEquals(TileType.WALL.getID(), zone.getTileTypeIDs()[3 * zone.getWidth() + 3]);
+	}
+
+	@Test
+	public void testCollisionFollowsChanges(){
+		World world = generateWorld1();
+		Zone zone = world.getZones()[0];
+		Player pupo = world.getPupo();
+		zone.addCharacter(pupo);
+		assertTrue(zone.isBlocked(-1, 3));
+		assertTrue(zone.isBlocked(0, 3)); // wall
+		assertTrue(zone.isBlocked(2, 3)); // furniture
+		assertTrue(zone.isBlocked(1, 1)); // pupo
+		assertFalse(zone.isBlocked(1, 2));
+
+		// facing south
+		assertTrue(pupo.moveForward());
+		assertFalse(zone.isBlocked(1, 1));
+		assertTrue(zone.isBlocked(1, 2));
+
+		KeyGate gate = new KeyGate(Gate.State.LOCKED, zone, new Coord(new Direction(Direction.NORTH), new Point(4,2)), "blue");
+		zone.addEntity(gate);
+		assertTrue(zone.isBlocked(4, 2));
+		long version = zone.getCollisionVersion();
+		gate.setPassable(true);
+		assertFalse(zone.isBlocked(4, 2));
+		assertTrue(zone.getCollisionVersion() > version);
+		gate.setPassable(false);
+		assertTrue(zone.checkForObstruction(new Point(4,2)));
+
+		zone.setTile(new Point(4,4), new WallTile(new Point(4,4)));
+		assertTrue(zone.isBlocked(4, 4));
+		zone.setTile(new Point(0,3), new FloorTile(new Point(0,3)));
+		assertFalse(zone.isBlocked(0, 3));
+	}
+
 	/**
 	 * Generates a test world which is a world with 1 zone and that zone is a 5x5 walkable area
 	 *  - impassable furniture at (2,3)
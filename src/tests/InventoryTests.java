@@ -3,6 +3,7 @@ package tests;
 import org.junit.Test;
 
 import junit.framework.TestCase;
+import model.Coin;
 import model.Inventory;
 import model.Item;
 import util.PointD;
@@ -70,4 +71,66 @@ public class InventoryTests extends TestCase {
 		
 		assertEquals(1, inventory.getStorageCapacity());
 	}
+	
+	@Test
+	public void testTypeCountsFollowChanges(){
+		Inventory inventory = new Inventory(10);
+		Coin stack = new Coin();
+		stack.setStackable(true);
+		stack.setStackSize(5);
+		Coin single = new Coin();
+		Item other = new TestItem();
+		inventory.addItem(other);
+		inventory.addItem(stack);
+		inventory.addItem(single);
+		
+		assertEquals(6, inventory.countOfType(Coin.class));
+		assertEquals(1, inventory.countOfType(TestItem.class));
+		assertSame(stack, inventory.getItemOfType(Coin.class));
+		assertEquals(2, inventory.getAllOfType(Coin.class).length);
+		assertEquals(2, inventory.indexOf(single));
+		
+		stack.setStackSize(7);
+		assertEquals(8, inventory.countOfType(Coin.class));
+		
+		inventory.removeItem(stack);
+		assertEquals(1, inventory.countOfType(Coin.class));
+		assertSame(single, inventory.getItemOfType(Coin.class));
+		assertFalse(inventory.containsItem(stack));
+		// Removed items no longer count towards the inventory
+		stack.setStackSize(3);
+		assertEquals(1, inventory.countOfType(Coin.class));
+		
+		assertEquals(1, inventory.removeAllOfType(Coin.class));
+		assertEquals(0, inventory.countOfType(Coin.class));
+		assertNull(inventory.getItemOfType(Coin.class));
+		assertTrue(inventory.containsItem(other));
+	}
+	
+	@Test
+	public void testConsume(){
+		Inventory inventory = new Inventory(10);
+		Coin[] coins = new Coin[3];
+		for(int i = 0; i < coins.length; i++){
+			coins[i] = new Coin();
+			coins[i].setStackable(true);
+			coins[i].setStackSize(4);
+			inventory.addItem(coins[i]);
+		}
+		
+		assertFalse(inventory.consume(Coin.class, 13));
+		assertEquals(12, inventory.countOfType(Coin.class));
+		
+		// Takes the first stack whole and part of the second
+		assertTrue(inventory.consume(Coin.class, 6));
+		assertFalse(inventory.containsItem(coins[0]));
+		assertEquals(2, coins[1].getStackSize());
+		assertEquals(4, coins[2].getStackSize());
+		assertEquals(6, inventory.countOfType(Coin.class));
+		
+		assertTrue(inventory.consume(Coin.class, 6));
+		assertEquals(0, inventory.countOfType(Coin.class));
+		assertTrue(inventory.hasRoom());
+		assertEquals(0, inventory.getAllOfType(Coin.class).length);
+	}
 }
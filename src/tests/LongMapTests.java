@@ -0,0 +1,55 @@
+package tests;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import util.LongMap;
+
+/**
+ * Tests for the long-keyed map used to look things up by ID
+ */
+public class LongMapTests extends TestCase {
+
+	@Test
+	public void testPutGetRemove(){
+		LongMap<String> map = new LongMap<String>();
+		assertNull(map.get(0));
+		assertNull(map.put(0, "zero"));
+		assertNull(map.put(-5, "minus five"));
+		assertEquals("zero", map.put(0, "nought"));
+		assertEquals("nought", map.get(0));
+		assertEquals("minus five", map.get(-5));
+		assertEquals(2, map.size());
+
+		assertEquals("nought", map.remove(0));
+		assertNull(map.remove(0));
+		assertNull(map.get(0));
+		assertEquals(1, map.size());
+	}
+
+	@Test
+	public void testMatchesHashMap(){
+		LongMap<Long> map = new LongMap<Long>();
+		Map<Long, Long> expected = new HashMap<Long, Long>();
+		Random random = new Random(222);
+
+		// Small key range so that keys are often replaced and removed
+		for(int i = 0; i < 20000; i++){
+			long key = random.nextInt(500);
+			if(random.nextInt(3) == 0){
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else{
+				assertEquals(expected.put(key, (long)i), map.put(key, (long)i));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		for(long key = 0; key < 500; key++){
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
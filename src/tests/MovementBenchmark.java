@@ -0,0 +1,82 @@
+package tests;
+
+import java.awt.Point;
+import java.lang.management.ManagementFactory;
+
+import model.FloorTile;
+import model.Player;
+import model.Tile;
+import model.WallTile;
+import model.Zone;
+import util.Coord;
+import util.Direction;
+
+/**
+ * Measures how much garbage moving characters around makes, by
+ * walking a player back and forth across a room, turning as it
+ * goes, and counting the bytes the thread allocated.
+ *
+ * Not a unit test; run its main method by hand.
+ */
+public class MovementBenchmark {
+	private static final int STEPS = 1000000;
+	private static final int ROUNDS = 5;
+	private static final int SIZE = 64;
+
+	public static void main(String[] args) {
+		com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		Zone zone = room(SIZE);
+		Player player = new Player(zone, new Coord(Direction.of(Direction.EAST), new Point(1, SIZE / 2)), true);
+		zone.addCharacter(player);
+
+		for(int round = 0; round < ROUNDS; round++){
+			long bytes = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			long moved = walk(player);
+			long time = System.nanoTime() - start;
+			bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+			System.out.printf("Round %d: %12.0f steps/sec %8.3f bytes/step (%d moved)%n",
+					round + 1, STEPS / (time / 1e9), (double)bytes / STEPS, moved);
+		}
+	}
+
+	/**
+	 * Walks the player back and forth, turning now and again
+	 * @return how many steps actually moved the player
+	 */
+	private static long walk(Player player){
+		Direction dir = player.getFacing();
+		long moved = 0;
+		for(int i = 0; i < STEPS; i++){
+			if(i % 16 == 15){
+				player.rotate(true);
+				player.rotate(false);
+			}
+			if(player.moveIn(dir)){
+				moved++;
+			}
+			else{
+				dir = Direction.oppositeDirection(dir);
+				player.face(dir);
+			}
+		}
+		return moved;
+	}
+
+	private static Zone room(int size){
+		Tile[][] tiles = new Tile[size][size];
+		for(int y = 0; y < size; y++){
+			for(int x = 0; x < size; x++){
+				if(x == 0 || y == 0 || x == size - 1 || y == size - 1)
+					tiles[y][x] = new WallTile(new Point(x,y));
+				else
+					tiles[y][x] = new FloorTile(new Point(x,y));
+			}
+		}
+		return new Zone("Benchmark", tiles);
+	}
+}
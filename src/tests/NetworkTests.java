@@ -1,9 +1,28 @@
 package tests;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Test;
 
 import junit.framework.TestCase;
+import model.Zone;
+import network.MessageInput;
+import network.MessageOutput;
+import network.Protocol;
+import network.Protocol.Event;
 import network.client.Client;
+import network.server.Connection;
 import network.server.Server;
 
 /**
@@ -50,6 +69,62 @@ public class NetworkTests extends TestCase {
 		}
 	}
 	
+	/**
+	 * Helper class for testing a connection's queue on its own, over
+	 * a socket of its own rather than one accepted by a running server
+	 */
+	private static class QueueConnection extends Connection {
+		private final Selector selector;
+		private final SocketChannel channel;
+		private final SocketChannel peer;
+		
+		private QueueConnection(Selector selector, SocketChannel channel, SocketChannel peer) throws IOException {
+			super(new Server(), channel, channel.register(selector, SelectionKey.OP_READ));
+			this.selector = selector;
+			this.channel = channel;
+			this.peer = peer;
+		}
+		
+		public static QueueConnection open() throws IOException {
+			try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+				listener.bind(new InetSocketAddress("localhost", 0));
+				SocketChannel channel = SocketChannel.open(listener.getLocalAddress());
+				SocketChannel peer = listener.accept();
+				channel.configureBlocking(false);
+				return new QueueConnection(Selector.open(), channel, peer);
+			}
+		}
+		
+		/**
+		 * Write everything queued, and read it at the other end
+		 * @param length -- how many bytes should arrive
+		 * @return the bytes which arrived, after the server's greeting
+		 */
+		public byte[] flush(int length) throws IOException {
+			write();
+			DataInputStream in = new DataInputStream(peer.socket().getInputStream());
+			in.readUTF();
+			assertEquals(Protocol.VERSION, in.readByte());
+			byte[] written = new byte[length];
+			in.readFully(written);
+			return written;
+		}
+		
+		public void writeQueued() throws IOException {
+			write();
+		}
+		
+		public void close() {
+			super.close();
+			try {
+				peer.close();
+				selector.close();
+			} catch (IOException e) {
+				throw new Error(e);
+			}
+		}
+	}
+	
 	/**
 	 * Check server reports itself as having bound correctly
 	 */
@@ -123,4 +198,220 @@ public class NetworkTests extends TestCase {
 			server.stop();
 		}
 	}
+	
+	/**
+	 * Connect more clients than there are player slots, checking
+	 * the extra clients are let in as spectators
+	 */
+	@Test
+	public void testSpectators() {
+		final Server server = new Server(Protocol.DEFAULT_PORT, 1);
+		server.initialise();
+		
+		/* leave the server running after the player slot is taken */
+		new Thread() {
+			@Override
+			public void run() {
+				server.run();
+			}
+		}.start();
+		
+		int clientCount = 3;
+		for (int i = 0; i < clientCount; i++)
+			(new BackgroundClient()).start();
+		
+		try {
+			/* give some time for clients to connect (or not) */
+			for (int i = 0; i < 50 && server.getConnectedCount() < clientCount; i++)
+				Thread.sleep(100);
+			assertEquals(clientCount, server.getConnectedCount());
+			assertEquals(1, server.getPlayerCount());
+		} catch (InterruptedException e) {
+			throw new Error(e);
+		} finally {
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Queue a state while another is still waiting to be written,
+	 * checking the newer one takes its place
+	 */
+	@Test
+	public void testQueuedStateReplaced() throws IOException {
+		QueueConnection connection = QueueConnection.open();
+		try {
+			/* the server's greeting is already queued */
+			connection.sendState(new byte[] { 1 });
+			assertEquals(2, connection.getQueueDepth());
+			assertEquals(0, connection.getDroppedFrames());
+			
+			connection.sendState(new byte[] { 1 });
+			assertEquals(2, connection.getQueueDepth());
+			assertEquals(1, connection.getDroppedFrames());
+			
+			connection.sendState(new byte[] { 2 });
+			assertEquals(2, connection.getQueueDepth());
+			assertEquals(2, connection.getDroppedFrames());
+			assertEquals(2, connection.flush(1)[0]);
+		} finally {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Queue messages around states, checking the messages all arrive
+	 * in the order they were sent and only the newest state is kept
+	 */
+	@Test
+	public void testMessagesKeepOrderAroundState() throws IOException {
+		QueueConnection connection = QueueConnection.open();
+		try {
+			connection.send(new byte[] { 1 });
+			connection.sendState(new byte[] { 2 });
+			connection.send(new byte[] { 3 });
+			connection.sendState(new byte[] { 4 });
+			connection.send(new byte[] { 5 });
+			assertEquals(1 + 4, connection.getQueueDepth());
+			assertEquals(1, connection.getDroppedFrames());
+			
+			byte[] written = connection.flush(4);
+			assertEquals(new String(new byte[] { 1, 3, 4, 5 }, StandardCharsets.ISO_8859_1),
+					new String(written, StandardCharsets.ISO_8859_1));
+			assertEquals(0, connection.getQueueDepth());
+		} finally {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Queue more than a connection will hold, checking the connection
+	 * gives up instead of writing
+	 */
+	@Test
+	public void testQueueOverflowDisconnects() throws IOException {
+		QueueConnection connection = QueueConnection.open();
+		try {
+			int queued;
+			do {
+				queued = connection.getQueueDepth();
+				connection.send(new byte[] { 1 });
+			} while (connection.getQueueDepth() > queued);
+			
+			/* a state which doesn't fit isn't queued either */
+			connection.sendState(new byte[] { 2 });
+			assertEquals(queued, connection.getQueueDepth());
+			connection.sendState(new byte[] { 3 });
+			assertEquals(queued, connection.getQueueDepth());
+			assertEquals(0, connection.getDroppedFrames());
+			
+			try {
+				connection.writeQueued();
+				fail("A client which fell too far behind should be disconnected");
+			} catch (IOException expected) {}
+		} finally {
+			connection.close();
+		}
+	}
+	
+	/**
+	 * Join, acknowledge the keyframe sent on joining and make a change,
+	 * checking the change is sent as a delta against that keyframe
+	 */
+	@Test
+	public void testFirstUpdateAfterJoinIsDelta() {
+		final Server server = new Server(Protocol.DEFAULT_PORT, 1);
+		server.initialise();
+		new Thread() {
+			@Override
+			public void run() {
+				server.run();
+			}
+		}.start();
+		
+		try (Socket socket = new Socket("localhost", Protocol.DEFAULT_PORT)) {
+			socket.setSoTimeout(5000);
+			DataInputStream greeting = new DataInputStream(socket.getInputStream());
+			greeting.readUTF();
+			greeting.readByte();
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeUTF(Protocol.CLIENT_MAGIC);
+			out.writeByte(Protocol.VERSION);
+			
+			MessageInput in = new MessageInput(socket.getInputStream());
+			while (in.next() != Event.ZONE_KEYFRAME)
+				;
+			long frame = in.readVarLong();
+			Zone zone = (Zone)in.readSerialised();
+			
+			MessageOutput message = new MessageOutput();
+			message.begin(Event.SNAPSHOT_ACK);
+			message.writeVarLong(zone.getID());
+			message.writeVarLong(frame);
+			message.writeTo(out);
+			message.begin(Event.ROTATE_CLOCKWISE);
+			message.writeTo(out);
+			out.flush();
+			
+			Event event;
+			while ((event = in.next()) != Event.ZONE_DELTA && event != Event.ZONE_KEYFRAME)
+				;
+			assertEquals(Event.ZONE_DELTA, event);
+			assertEquals(zone.getID(), in.readVarLong());
+			in.readVarLong();
+			assertEquals(frame, in.readVarLong());
+		} catch (IOException | ClassNotFoundException e) {
+			throw new Error(e);
+		} finally {
+			server.stop();
+		}
+	}
+	
+	/**
+	 * Send the server a message far larger than any client needs to,
+	 * checking it hangs up rather than buffering it
+	 */
+	@Test
+	public void testOversizedMessage() {
+		final Server server = new Server();
+		server.initialise();
+		new Thread() {
+			@Override
+			public void run() {
+				server.run();
+			}
+		}.start();
+		
+		try (Socket socket = new Socket("localhost", Protocol.DEFAULT_PORT)) {
+			socket.setSoTimeout(5000);
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeUTF(Protocol.CLIENT_MAGIC);
+			out.writeByte(Protocol.VERSION);
+			
+			/* a megabyte long message, as a varint length */
+			out.write(new byte[] { (byte)0x80, (byte)0x80, 0x40 });
+			try {
+				out.write(new byte[16384]);
+				out.flush();
+			} catch (IOException e) {
+				/* already hung up on */
+			}
+			
+			/* skip whatever was sent until the server hangs up */
+			InputStream in = socket.getInputStream();
+			byte[] skipped = new byte[4096];
+			try {
+				while (in.read(skipped) >= 0)
+					;
+			} catch (SocketTimeoutException e) {
+				fail("Server didn't disconnect the client");
+			} catch (IOException e) {
+				/* reset by the server, which is hanging up too */
+			}
+		} catch (IOException e) {
+			throw new Error(e);
+		} finally {
+			server.stop();
+		}
+	}
 }
@@ -0,0 +1,148 @@
+package tests;
+
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import network.MessageInput;
+import network.MessageOutput;
+import network.Protocol.Event;
+
+/**
+ * Compares the binary message format against the ObjectOutputStream
+ * framing it replaced, for a mix of the small messages which make up
+ * most traffic: movement, attacks and snapshot acks.
+ *
+ * Not a unit test; run its main method by hand.
+ */
+public class ProtocolBenchmark {
+	private static final int MESSAGES = 200000;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException, ClassNotFoundException {
+		for(int round = 0; round < ROUNDS; round++){
+			System.out.println("Round "+(round + 1));
+			report("ObjectOutputStream", runSerialised());
+			report("binary", runBinary());
+		}
+	}
+
+	private static void report(String name, long[] result){
+		double seconds = result[0] / 1e9;
+		System.out.printf("  %-20s %12.0f msgs/sec %8.2f bytes/msg%n",
+				name, MESSAGES / seconds, (double)result[1] / MESSAGES);
+	}
+
+	/**
+	 * Encodes and decodes the messages the way they used to be sent
+	 * @return time taken in nanoseconds, and bytes used
+	 */
+	private static long[] runSerialised() throws IOException, ClassNotFoundException {
+		long start = System.nanoTime();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		for(int i = 0; i < MESSAGES; i++){
+			switch(i % 4){
+			case 0:
+				out.writeObject(Event.MOVE_TO_POINT);
+				out.writeObject(new Point(i % 40, i % 30));
+				break;
+			case 1:
+				out.writeObject(Event.ATTACK);
+				out.writeLong(i % 100);
+				break;
+			case 2:
+				out.writeObject(Event.SNAPSHOT_ACK);
+				out.writeLong(i % 10);
+				out.writeLong(i);
+				break;
+			default:
+				out.writeObject(Event.FORWARD);
+				break;
+			}
+			out.flush();
+		}
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		long check = 0;
+		for(int i = 0; i < MESSAGES; i++){
+			Event event = (Event)in.readObject();
+			switch(event){
+			case MOVE_TO_POINT:
+				check += ((Point)in.readObject()).x;
+				break;
+			case ATTACK:
+				check += in.readLong();
+				break;
+			case SNAPSHOT_ACK:
+				check += in.readLong() + in.readLong();
+				break;
+			default:
+				check++;
+				break;
+			}
+		}
+		long time = System.nanoTime() - start;
+		if(check == 0) System.out.println();
+		return new long[]{time, bytes.size()};
+	}
+
+	/**
+	 * Encodes and decodes the messages in the binary format
+	 * @return time taken in nanoseconds, and bytes used
+	 */
+	private static long[] runBinary() throws IOException {
+		long start = System.nanoTime();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		MessageOutput message = new MessageOutput();
+		for(int i = 0; i < MESSAGES; i++){
+			switch(i % 4){
+			case 0:
+				message.begin(Event.MOVE_TO_POINT);
+				message.writeVarInt(i % 40);
+				message.writeVarInt(i % 30);
+				break;
+			case 1:
+				message.begin(Event.ATTACK);
+				message.writeVarLong(i % 100);
+				break;
+			case 2:
+				message.begin(Event.SNAPSHOT_ACK);
+				message.writeVarLong(i % 10);
+				message.writeVarLong(i);
+				break;
+			default:
+				message.begin(Event.FORWARD);
+				break;
+			}
+			message.writeTo(bytes);
+		}
+
+		MessageInput in = new MessageInput(new ByteArrayInputStream(bytes.toByteArray()));
+		long check = 0;
+		for(int i = 0; i < MESSAGES; i++){
+			switch(in.next()){
+			case MOVE_TO_POINT:
+				check += in.readVarInt();
+				in.readVarInt();
+				break;
+			case ATTACK:
+				check += in.readVarLong();
+				break;
+			case SNAPSHOT_ACK:
+				check += in.readVarLong() + in.readVarLong();
+				break;
+			default:
+				check++;
+				break;
+			}
+		}
+		long time = System.nanoTime() - start;
+		if(check == 0) System.out.println();
+		return new long[]{time, bytes.size()};
+	}
+}
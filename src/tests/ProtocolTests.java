@@ -0,0 +1,123 @@
+package tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import network.MessageInput;
+import network.MessageOutput;
+import network.Protocol.Event;
+import util.VarInt;
+
+/**
+ * Tests for the binary message format used between client and server
+ */
+public class ProtocolTests extends TestCase {
+
+	@Test
+	public void testVarIntRoundTrip() throws IOException {
+		long[] values = {0, 1, -1, 63, -64, 64, 127, 128, 300, -300,
+				Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for(long value : values){
+			VarInt.writeSigned(out, value);
+			VarInt.writeUnsigned(out, value);
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for(long value : values){
+			assertEquals(value, VarInt.readSigned(in));
+			assertEquals(value, VarInt.readUnsigned(in));
+		}
+	}
+
+	@Test
+	public void testSmallValuesTakeOneByte() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		VarInt.writeUnsigned(out, 127);
+		VarInt.writeSigned(out, -64);
+		assertEquals(2, bytes.size());
+	}
+
+	@Test
+	public void testOpcodesAreUnique(){
+		Set<Integer> opcodes = new HashSet<>();
+		for(Event e : Event.values()){
+			assertTrue(opcodes.add(e.getOpcode()));
+			assertEquals(e, Event.fromOpcode(e.getOpcode()));
+		}
+		assertNull(Event.fromOpcode(0));
+		assertNull(Event.fromOpcode(-1));
+		assertNull(Event.fromOpcode(1000));
+	}
+
+	@Test
+	public void testMessageRoundTrip() throws IOException, ClassNotFoundException {
+		MessageOutput message = new MessageOutput();
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		message.begin(Event.MOVE_TO_POINT);
+		message.writeVarInt(3);
+		message.writeVarInt(-7);
+		message.writeTo(stream);
+
+		message.begin(Event.POPUP_MESSAGE);
+		message.writeString("Helo");
+		message.writeTo(stream);
+
+		/* left partly unread by the reader */
+		message.begin(Event.SNAPSHOT_ACK);
+		message.writeVarLong(12);
+		message.writeVarLong(123456789);
+		message.writeTo(stream);
+
+		message.begin(Event.INTERACT);
+		message.writeSerialised("an interaction");
+		message.writeTo(stream);
+
+		MessageInput in = new MessageInput(new ByteArrayInputStream(stream.toByteArray()));
+		assertEquals(Event.MOVE_TO_POINT, in.next());
+		assertEquals(3, in.readVarInt());
+		assertEquals(-7, in.readVarInt());
+		assertEquals(Event.POPUP_MESSAGE, in.next());
+		assertEquals("Helo", in.readString());
+		assertEquals(Event.SNAPSHOT_ACK, in.next());
+		assertEquals(12, in.readVarLong());
+		assertEquals(Event.INTERACT, in.next());
+		assertEquals("an interaction", in.readSerialised());
+		assertNull(in.next());
+	}
+
+	@Test
+	public void testInputMessagesAreSmall() throws IOException {
+		MessageOutput message = new MessageOutput();
+		message.begin(Event.FORWARD);
+		assertEquals(2, message.getFramedSize());
+		message.begin(Event.MOVE_TO_POINT);
+		message.writeVarInt(20);
+		message.writeVarInt(30);
+		assertEquals(4, message.getFramedSize());
+		assertEquals(4, message.toByteArray().length);
+	}
+
+	@Test
+	public void testUnknownOpcodeRejected() throws IOException {
+		MessageInput in = new MessageInput(new ByteArrayInputStream(new byte[]{1, 0}));
+		try {
+			in.next();
+			fail("Read a message with an unknown opcode");
+		} catch (StreamCorruptedException e) {
+			/* expected */
+		}
+	}
+}
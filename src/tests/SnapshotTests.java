@@ -0,0 +1,230 @@
+package tests;
+
+import java.awt.Point;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import model.Coin;
+import model.Enemy;
+import model.FloorTile;
+import model.Furniture;
+import model.Key;
+import model.Player;
+import model.Slime;
+import model.World;
+import model.Zone;
+import model.ZoneSnapshot;
+import util.Coord;
+import util.Direction;
+
+/**
+ * Tests for capturing zone snapshots and sending the differences
+ * between them
+ */
+public class SnapshotTests extends TestCase {
+
+	@Test
+	public void testUnchangedZoneCapturesEqual(){
+		Zone zone = generateZone();
+		assertEquals(ZoneSnapshot.capture(zone), ZoneSnapshot.capture(zone));
+	}
+
+	@Test
+	public void testDeltaRoundTrip() throws IOException {
+		Zone zone = generateZone();
+		Player player = (Player)zone.getCharacters().get(0);
+		ZoneSnapshot baseline = ZoneSnapshot.capture(zone);
+
+		player.rotate(false);
+		player.moveForward();
+		for(int i = 0; i < 8; i++)
+			player.tick();
+		ZoneSnapshot current = ZoneSnapshot.capture(zone);
+		assertFalse(current.equals(baseline));
+
+		ZoneSnapshot received = baseline.readDelta(delta(current, baseline));
+		assertEquals(current, received);
+	}
+
+	@Test
+	public void testApplyDeltaToCopy() throws IOException, ClassNotFoundException {
+		Zone zone = generateZone();
+		Zone copy = copy(zone);
+		Player player = (Player)zone.getCharacters().get(0);
+		ZoneSnapshot baseline = ZoneSnapshot.capture(zone);
+
+		player.rotate(true);
+		player.moveForward();
+		for(int i = 0; i < 8; i++)
+			player.tick();
+		ZoneSnapshot current = ZoneSnapshot.capture(zone);
+
+		ZoneSnapshot received = baseline.readDelta(delta(current, baseline));
+		received.applyTo(copy, baseline);
+		assertEquals(current, ZoneSnapshot.capture(copy));
+		assertEquals(player.getCoord().getPoint(), copy.getCharacterFromID(player.getID()).getCoord().getPoint());
+	}
+
+	@Test
+	public void testUnchangedDeltaIsSmall() throws IOException {
+		Zone zone = generateZone();
+		ZoneSnapshot snapshot = ZoneSnapshot.capture(zone);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		snapshot.writeDelta(snapshot, new DataOutputStream(bytes));
+
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new ObjectOutputStream(full).writeObject(zone);
+		assertTrue(bytes.size() < full.size() / 10);
+	}
+
+	@Test
+	public void testStructuralChangeIsIncompatible(){
+		Zone zone = generateZone();
+		ZoneSnapshot baseline = ZoneSnapshot.capture(zone);
+		assertTrue(baseline.isCompatible(baseline));
+		assertFalse(baseline.isCompatible(null));
+
+		zone.addItem(new Key(new Point(3,3), "red"));
+		assertFalse(ZoneSnapshot.capture(zone).isCompatible(baseline));
+	}
+
+	@Test
+	public void testCharacterRecordsFollowRemovals() throws IOException, ClassNotFoundException {
+		Zone zone = generateZone();
+		Slime first = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(1,3)));
+		Slime second = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(2,3)));
+		Slime third = new Slime(zone, new Coord(new Direction(Direction.NORTH), new Point(3,3)));
+		zone.addCharacter(first);
+		zone.addCharacter(second);
+		zone.addCharacter(third);
+		zone.removeCharacter(first);
+		assertEquals(3, zone.getCharacters().size());
+
+		Zone copy = copy(zone);
+		ZoneSnapshot baseline = ZoneSnapshot.capture(zone);
+		second.damage(4);
+		third.face(new Direction(Direction.WEST));
+		third.moveIn(new Direction(Direction.SOUTH));
+		ZoneSnapshot current = ZoneSnapshot.capture(zone);
+		assertFalse(current.equals(baseline));
+
+		baseline.readDelta(delta(current, baseline)).applyTo(copy, baseline);
+		assertEquals(current, ZoneSnapshot.capture(copy));
+		Enemy copied = (Enemy)copy.getCharacterFromID(second.getID());
+		assertEquals(6, copied.getRemainingHealth());
+		Coord moved = copy.getCharacterFromID(third.getID()).getCoord();
+		assertEquals(new Point(3,4), moved.getPoint());
+		assertEquals(Direction.WEST, moved.getFacing().getDirection());
+	}
+
+	@Test
+	public void testClientBaselineAfterRemoval() throws IOException, ClassNotFoundException {
+		Zone zone = generateZone();
+		Slime first = new Slime(zone, new Coord(Direction.of(Direction.NORTH), new Point(1,3)));
+		Slime second = new Slime(zone, new Coord(Direction.of(Direction.NORTH), new Point(2,3)));
+		Slime third = new Slime(zone, new Coord(Direction.of(Direction.NORTH), new Point(3,3)));
+		zone.addCharacter(first);
+		zone.addCharacter(second);
+		zone.addCharacter(third);
+		// Build the server's index, then have a character leave it
+		ZoneSnapshot.capture(zone);
+		zone.removeCharacter(first);
+
+		// A client captures its own baseline from the keyframe it is sent
+		Zone copy = copy(zone);
+		ZoneSnapshot clientBaseline = ZoneSnapshot.capture(copy);
+		ZoneSnapshot serverBaseline = ZoneSnapshot.capture(zone);
+		assertEquals(serverBaseline, clientBaseline);
+
+		assertTrue(second.moveIn(Direction.of(Direction.SOUTH)));
+		ZoneSnapshot current = ZoneSnapshot.capture(zone);
+		clientBaseline.readDelta(delta(current, serverBaseline)).applyTo(copy, clientBaseline);
+		assertEquals(new Point(2,4), copy.getCharacterFromID(second.getID()).getCoord().getPoint());
+		assertEquals(new Point(3,3), copy.getCharacterFromID(third.getID()).getCoord().getPoint());
+		assertEquals(current, ZoneSnapshot.capture(copy));
+	}
+
+	@Test
+	public void testVersionTracksChanges(){
+		Zone zone = generateZone();
+		Player player = (Player)zone.getCharacters().get(0);
+		long version = zone.getVersion();
+
+		// Idle ticks change nothing
+		for(int i = 0; i < 8; i++)
+			zone.tick();
+		assertEquals(version, zone.getVersion());
+
+		player.rotate(true);
+		assertFalse(version == zone.getVersion());
+		version = zone.getVersion();
+
+		player.getInventory().addItem(new Key(new Point(1,1), "red"));
+		assertFalse(version == zone.getVersion());
+		version = zone.getVersion();
+
+		zone.removeItem(zone.getItems().get(0));
+		assertFalse(version == zone.getVersion());
+	}
+
+	@Test
+	public void testVersionChangesWhenPlayerWithItemsLeaves(){
+		World world = World.firstLevel();
+		Player yelo = world.getYelo();
+		Zone zone = yelo.getZone();
+		long version = zone.getVersion();
+
+		yelo.getInventory().addItem(new Coin());
+		assertFalse(version == zone.getVersion());
+		version = zone.getVersion();
+
+		// The zone's version only ever goes forward, so a player
+		// holding things leaving it is never mistaken for no change
+		zone.removeCharacter(yelo);
+		assertTrue(zone.getVersion() > version);
+	}
+
+	@Test
+	public void testTileChangeIsIncompatible(){
+		Zone zone = generateZone();
+		ZoneSnapshot baseline = ZoneSnapshot.capture(zone);
+		long version = zone.getVersion();
+
+		zone.setTile(new Point(1,1), new FloorTile(new Point(1,1)));
+		assertFalse(version == zone.getVersion());
+		assertFalse(ZoneSnapshot.capture(zone).isCompatible(baseline));
+	}
+
+	private DataInputStream delta(ZoneSnapshot current, ZoneSnapshot baseline) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		current.writeDelta(baseline, new DataOutputStream(bytes));
+		return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+	}
+
+	private Zone copy(Zone zone) throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new ObjectOutputStream(bytes).writeObject(zone);
+		return (Zone)new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+	}
+
+	/**
+	 * Generates a 5x5 zone of floor with a player at (2,2) and
+	 * some furniture and an item lying around
+	 * @return
+	 */
+	private Zone generateZone(){
+		Zone zone = new Zone("snapshotZone", TestUtil.generateTiles(5, 5));
+		zone.addCharacter(new Player(zone, new Coord(new Direction(Direction.NORTH), new Point(2,2)), true));
+		zone.addEntity(new Furniture(zone, new Coord(new Direction(Direction.NORTH), new Point(0,0)), null, "table"));
+		zone.addItem(new Key(new Point(4,4), "blue"));
+		return zone;
+	}
+}
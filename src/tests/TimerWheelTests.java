@@ -0,0 +1,64 @@
+package tests;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import util.TimerWheel;
+
+/**
+ * Tests for the timing wheel zones use to wake things up when they're due
+ */
+public class TimerWheelTests extends TestCase {
+
+	@Test
+	public void testDueInOrder(){
+		TimerWheel<Long> wheel = new TimerWheel<Long>();
+		final List<Long> fired = new ArrayList<Long>();
+		Random random = new Random(222);
+
+		// Spread over every level of the wheel, and beyond it
+		long[] deadlines = new long[2000];
+		for(int i = 0; i < deadlines.length; i++){
+			deadlines[i] = 1 + (long)(random.nextDouble() * random.nextDouble() * 20000000);
+			wheel.schedule(deadlines[i], deadlines[i]);
+		}
+		assertEquals(deadlines.length, wheel.size());
+
+		wheel.advance(20000000, new TimerWheel.Handler<Long>(){
+			@Override
+			public void due(Long item, long tick){
+				assertEquals(item.longValue(), tick);
+				fired.add(item);
+			}
+		});
+		assertEquals(deadlines.length, fired.size());
+		assertEquals(0, wheel.size());
+		for(int i = 1; i < fired.size(); i++)
+			assertTrue(fired.get(i - 1) <= fired.get(i));
+	}
+
+	@Test
+	public void testRescheduleWhileAdvancing(){
+		TimerWheel<String> wheel = new TimerWheel<String>();
+		final TimerWheel<String> w = wheel;
+		final List<Long> ticks = new ArrayList<Long>();
+		wheel.schedule("repeat", 0); // overdue things are due next tick
+		wheel.advance(200, new TimerWheel.Handler<String>(){
+			@Override
+			public void due(String item, long tick){
+				ticks.add(tick);
+				w.schedule(item, tick + 70);
+			}
+		});
+		assertEquals(3, ticks.size());
+		assertEquals(Long.valueOf(1), ticks.get(0));
+		assertEquals(Long.valueOf(71), ticks.get(1));
+		assertEquals(Long.valueOf(141), ticks.get(2));
+		assertEquals(200, wheel.now());
+		assertEquals(1, wheel.size());
+	}
+}
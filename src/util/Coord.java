@@ -4,30 +4,28 @@ import java.awt.Point;
 import java.io.Serializable;
 
 /**
- * Represents a combination of Point for position and Direction for facing
+ * Represents a combination of Point for position and Direction for facing.
+ * Coords are immutable, so one can be shared and kept for as long as the
+ * position it describes doesn't change; the point given to a coord
+ * mustn't be modified afterwards, and neither must the one it returns.
  * 
  * @author Martin Chau
  *
  */
 public class Coord implements Serializable {
+	private static final long serialVersionUID = 4215280624807249982L;
 	public Coord(Direction facing, Point point) {
 		this.facing = facing;
 		this.point = point;
 	}
-	private Direction facing;
-	private Point point;
+	private final Direction facing;
+	private final Point point;
 	public Direction getFacing() {
 		return facing;
 	}
-	public void setFacing(Direction facing) {
-		this.facing = facing;
-	}
 	public Point getPoint() {
 		return point;
 	}
-	public void setPoint(Point point) {
-		this.point = point;
-	}
 	
 	
 	@Override
@@ -52,7 +50,7 @@ public class Coord implements Serializable {
 	public static Coord fromString(String s){
 		String[] split = s.split(" ");
 		Point p = new Point(Integer.parseInt(split[0]), Integer.parseInt(split[1]));
-		Direction d = new Direction(Integer.parseInt(split[2]));
+		Direction d = Direction.of(Integer.parseInt(split[2]));
 		return new Coord(d,p);
 	}
 	
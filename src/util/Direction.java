@@ -5,25 +5,75 @@ import java.io.Serializable;
 
 /**
  * Defines one of the four cardinal directions that can be moved in.
+ * Directions are immutable, and there is only need for one of each;
+ * use of() rather than the constructor to get it.
  * 
  * @author Robert Campbell
  * @author Martin Chau
  */
 public class Direction implements Serializable {
+	private static final long serialVersionUID = -1244685970412015057L;
 	public static final int NORTH = 0;
 	public static final int EAST = 1;
 	public static final int SOUTH = 2;
 	public static final int WEST = 3;
 	
-	private int direction;
+	private static final Direction[] VALUES = {
+		new Direction(NORTH), new Direction(EAST), new Direction(SOUTH), new Direction(WEST)
+	};
+	// Steps across and down for each direction
+	private static final int[] DX = { 0, 1, 0, -1 };
+	private static final int[] DY = { -1, 0, 1, 0 };
+	
+	private final int direction;
+	
+	/**
+	 * Creates a direction. Prefer of(), which doesn't create a new one
+	 * every time.
+	 */
 	public Direction(int direction){
 		this.direction = direction;
 	}
+	
+	/**
+	 * @param direction One of NORTH, EAST, SOUTH or WEST.
+	 * @return The direction with that value.
+	 */
+	public static Direction of(int direction){
+		if(direction < 0 || direction >= VALUES.length)
+			throw new IllegalArgumentException(direction + " is not a valid direction!");
+		return VALUES[direction];
+	}
+	
 	public int getDirection(){
 		return this.direction;
 	}
-	public void setDirection(int direction){
-		this.direction = direction;
+	
+	/**
+	 * @return How far x changes when moving one square in this direction.
+	 */
+	public int dx(){
+		return DX[direction];
+	}
+	
+	/**
+	 * @return How far y changes when moving one square in this direction.
+	 */
+	public int dy(){
+		return DY[direction];
+	}
+	
+	/**
+	 * @param isClockwise True to turn clockwise, false for anticlockwise.
+	 * @return The direction a quarter turn away from this one.
+	 */
+	public Direction rotate(boolean isClockwise){
+		return VALUES[(direction + (isClockwise ? 1 : 3)) & 3];
+	}
+	
+	/* deserialised directions are swapped for the shared ones */
+	private Object readResolve(){
+		return of(direction);
 	}
 	
 	public static PointD move(PointD initial, int direction, double amount){
@@ -65,10 +115,10 @@ public class Direction implements Serializable {
 	 * @return opposite direction
 	 */
 	public static Direction oppositeDirection(Direction direction){
-		if(direction.getDirection() == NORTH) return new Direction(SOUTH);
-		if(direction.getDirection() == EAST) return new Direction(WEST);
-		if(direction.getDirection() == SOUTH) return new Direction(NORTH);
-		if(direction.getDirection() == WEST) return new Direction(EAST);
+		if(direction.getDirection() == NORTH) return VALUES[SOUTH];
+		if(direction.getDirection() == EAST) return VALUES[WEST];
+		if(direction.getDirection() == SOUTH) return VALUES[NORTH];
+		if(direction.getDirection() == WEST) return VALUES[EAST];
 		throw new IllegalArgumentException(direction.getDirection() + " is not a valid direction!");
 	}
 	
@@ -81,10 +131,10 @@ public class Direction implements Serializable {
 		if(Coord.getDistance(start, end) != 1d)
 			throw new IllegalArgumentException("Can't get direction from two non-adjacent points.");
 		
-		if(end.x == start.x + 1) return new Direction(Direction.EAST);
-		else if(end.x == start.x - 1) return new Direction(Direction.WEST);
-		else if(end.y == start.y + 1) return new Direction(Direction.SOUTH);
-		else if(end.y == start.y - 1) return new Direction(Direction.NORTH);
+		if(end.x == start.x + 1) return VALUES[EAST];
+		else if(end.x == start.x - 1) return VALUES[WEST];
+		else if(end.y == start.y + 1) return VALUES[SOUTH];
+		else if(end.y == start.y - 1) return VALUES[NORTH];
 		
 		else throw new IllegalArgumentException("Can't classify that as a direction.");
 	}
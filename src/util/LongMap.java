@@ -0,0 +1,157 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to objects, for looking things up by ID.
+ * Keys are stored unboxed in an open-addressing table with linear
+ * probing, so lookups, and updates which don't grow the table,
+ * allocate nothing. Null values can't be stored; get() returns null
+ * for keys which aren't in the map.
+ *
+ * @param <V> The type of value stored.
+ */
+public final class LongMap<V> {
+	private static final int MIN_CAPACITY = 8;
+
+	// The table is grown once it is more than this full
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private long[] keys;
+	// A null value marks an empty slot
+	private Object[] values;
+	private int size;
+	private int mask;
+	private int resizeAt;
+
+	public LongMap(){
+		this(MIN_CAPACITY);
+	}
+
+	/**
+	 * @param expected The number of entries the map should hold without growing.
+	 */
+	public LongMap(int expected){
+		int capacity = MIN_CAPACITY;
+		while(capacity * LOAD_FACTOR < expected)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	private void allocate(int capacity){
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		resizeAt = (int)(capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * Spreads the bits of a key, since IDs are usually small and
+	 * sequential and would otherwise all land in the first slots.
+	 */
+	private int slot(long key){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * @return The value for the given key, or null if there isn't one.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key){
+		for(int i = slot(key); values[i] != null; i = (i + 1) & mask){
+			if(keys[i] == key)
+				return (V)values[i];
+		}
+		return null;
+	}
+
+	public boolean containsKey(long key){
+		return get(key) != null;
+	}
+
+	/**
+	 * Maps a key to a value, replacing any value it had.
+	 *
+	 * @return The value the key had before, or null if it had none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value){
+		if(value == null)
+			throw new IllegalArgumentException("Can't store a null value in a LongMap.");
+
+		int i = slot(key);
+		for(; values[i] != null; i = (i + 1) & mask){
+			if(keys[i] == key){
+				V old = (V)values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+		keys[i] = key;
+		values[i] = value;
+		if(++size > resizeAt)
+			grow();
+		return null;
+	}
+
+	/**
+	 * Removes a key and its value from the map.
+	 *
+	 * @return The value the key had, or null if it had none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key){
+		int i = slot(key);
+		while(values[i] != null && keys[i] != key)
+			i = (i + 1) & mask;
+		if(values[i] == null)
+			return null;
+
+		V old = (V)values[i];
+		size--;
+
+		// Shift later entries of the same probe run back into the gap,
+		// so that lookups never have to step over removed entries
+		int gap = i;
+		for(int j = (gap + 1) & mask; values[j] != null; j = (j + 1) & mask){
+			int home = slot(keys[j]);
+			// Only move an entry if its home slot isn't between the gap and it
+			if(((j - home) & mask) >= ((j - gap) & mask)){
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		values[gap] = null;
+		return old;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	public boolean isEmpty(){
+		return size == 0;
+	}
+
+	public void clear(){
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	private void grow(){
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(keys.length * 2);
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldValues[i] == null) continue;
+
+			int j = slot(oldKeys[i]);
+			while(values[j] != null)
+				j = (j + 1) & mask;
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of things which are due at some tick in the future, so
+ * that each tick only the things due then need looking at. This is a
+ * hierarchical timing wheel: things due within the next 64 ticks sit
+ * in one of 64 slots, one per tick; things due later sit in coarser
+ * wheels, and move down into finer ones as their time gets closer.
+ * Scheduling and finding what is due take constant time, however many
+ * things are waiting.
+ *
+ * @param <T> The type of thing being scheduled.
+ */
+public final class TimerWheel<T> {
+	private static final int BITS = 6;
+	private static final int SLOTS = 1 << BITS;
+	private static final int MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	/**
+	 * Something that can be told what is due.
+	 */
+	public interface Handler<T> {
+		/**
+		 * @param item The thing which is due.
+		 * @param tick The tick it was due on.
+		 */
+		void due(T item, long tick);
+	}
+
+	private static final class Entry<T> {
+		T item;
+		long deadline;
+		Entry<T> next;
+	}
+
+	// wheels[level][slot] is a linked list of entries
+	private final Entry<T>[][] wheels;
+	// Entries too far away for even the coarsest wheel
+	private final List<Entry<T>> overflow = new ArrayList<Entry<T>>();
+	// Spare entries, so that scheduling doesn't allocate
+	private Entry<T> free;
+	private long now;
+	private int size;
+
+	public TimerWheel(){
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Entry<T>[][] empty = new Entry[LEVELS][SLOTS];
+		wheels = empty;
+	}
+
+	/**
+	 * @return The last tick which has been advanced to.
+	 */
+	public long now(){
+		return now;
+	}
+
+	/**
+	 * @return The number of things waiting to be due.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Schedules something to be due on a tick. Things scheduled for
+	 * now or earlier are due on the next tick.
+	 *
+	 * @param item The thing to schedule.
+	 * @param deadline The tick it is due on.
+	 */
+	public void schedule(T item, long deadline){
+		Entry<T> e = free;
+		if(e != null)
+			free = e.next;
+		else
+			e = new Entry<T>();
+		e.item = item;
+		e.deadline = Math.max(deadline, now + 1);
+		place(e);
+		size++;
+	}
+
+	private void place(Entry<T> e){
+		long delta = e.deadline - now;
+		for(int level = 0; level < LEVELS; level++){
+			if(delta < 1L << (BITS * (level + 1))){
+				int slot = (int)(e.deadline >>> (BITS * level)) & MASK;
+				e.next = wheels[level][slot];
+				wheels[level][slot] = e;
+				return;
+			}
+		}
+		overflow.add(e);
+	}
+
+	/**
+	 * Moves time forward to the given tick, handing everything which
+	 * becomes due along the way to the handler, in order of tick.
+	 * The handler may schedule more things.
+	 *
+	 * @param tick The tick to advance to.
+	 * @param handler What to hand due things to.
+	 */
+	public void advance(long tick, Handler<? super T> handler){
+		while(now < tick){
+			if(size == 0){
+				now = tick; // nothing to find on the way
+				return;
+			}
+			now++;
+			cascade();
+
+			int slot = (int)now & MASK;
+			Entry<T> e = wheels[0][slot];
+			wheels[0][slot] = null;
+			while(e != null){
+				Entry<T> next = e.next;
+				T item = e.item;
+				e.item = null;
+				e.next = free;
+				free = e;
+				size--;
+				handler.due(item, now);
+				e = next;
+			}
+		}
+	}
+
+	/**
+	 * Moves entries from coarser wheels into finer ones when the
+	 * finer wheels come round to the start of their next turn.
+	 */
+	private void cascade(){
+		for(int level = 1; level < LEVELS; level++){
+			if((now & ((1L << (BITS * level)) - 1)) != 0)
+				return;
+			int slot = (int)(now >>> (BITS * level)) & MASK;
+			Entry<T> e = wheels[level][slot];
+			wheels[level][slot] = null;
+			while(e != null){
+				Entry<T> next = e.next;
+				place(e);
+				e = next;
+			}
+			if(level == LEVELS - 1 && slot == 0 && !overflow.isEmpty()){
+				List<Entry<T>> waiting = new ArrayList<Entry<T>>(overflow);
+				overflow.clear();
+				for(Entry<T> o : waiting)
+					place(o);
+			}
+		}
+	}
+}
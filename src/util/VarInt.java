@@ -0,0 +1,83 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Reads and writes variable-length integers, seven bits per byte
+ * with the high bit set on every byte but the last. Small values
+ * (which most IDs, coordinates and counts are) take one or two bytes
+ * rather than four or eight.
+ *
+ * Signed values are zig-zag encoded first so that small negative
+ * numbers stay small.
+ */
+public final class VarInt {
+	private VarInt(){}
+
+	/**
+	 * Writes a non-negative long; negative values are written
+	 * correctly but always take ten bytes.
+	 */
+	public static void writeUnsigned(DataOutput out, long value) throws IOException {
+		while((value & ~0x7FL) != 0){
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	/**
+	 * Reads a long written by {@link #writeUnsigned(DataOutput, long)}.
+	 */
+	public static long readUnsigned(DataInput in) throws IOException {
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new StreamCorruptedException("Variable-length integer is too long.");
+	}
+
+	/**
+	 * Writes a long which may be negative.
+	 */
+	public static void writeSigned(DataOutput out, long value) throws IOException {
+		writeUnsigned(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads a long written by {@link #writeSigned(DataOutput, long)}.
+	 */
+	public static long readSigned(DataInput in) throws IOException {
+		long value = readUnsigned(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads an int written with {@link #writeSigned(DataOutput, long)}.
+	 */
+	public static int readSignedInt(DataInput in) throws IOException {
+		long value = readSigned(in);
+		if(value != (int)value)
+			throw new StreamCorruptedException("Variable-length integer is out of range.");
+		return (int)value;
+	}
+
+	/**
+	 * Reads a count or length written with {@link #writeUnsigned(DataOutput, long)},
+	 * checking it isn't unreasonably large.
+	 *
+	 * @param max The largest value which is acceptable.
+	 */
+	public static int readLength(DataInput in, int max) throws IOException {
+		long value = readUnsigned(in);
+		if(value < 0 || value > max)
+			throw new StreamCorruptedException("Length "+value+" is out of range.");
+		return (int)value;
+	}
+}
@@ -144,10 +144,12 @@ public class GameListener implements KeyListener, MouseListener {
 	 */
 	public class InteractionMenuListener implements ActionListener {
 		private RenderPanel panel;
+		private Interactable interactable;
 		private Interaction interaction;
 		
-		public InteractionMenuListener(RenderPanel panel, Interaction interaction){
+		public InteractionMenuListener(RenderPanel panel, Interactable interactable, Interaction interaction){
 			this.panel = panel;
+			this.interactable = interactable;
 			this.interaction = interaction;
 		}
 		
@@ -156,7 +158,7 @@ public class GameListener implements KeyListener, MouseListener {
 			if(zone == null) return;
 			
 			try {
-				client.interact(interaction);
+				client.interact(interactable, interaction);
 				panel.removeInteractionMenu(); // menu closes once you click an interaction
 			} catch (IOException e1) {
 				System.err.println("Unable to perform interaction " + interaction.getText() + " because of network error.");
@@ -154,7 +154,7 @@ public class RenderPanel extends JPanel {
     	for(Interaction interaction : interactions){
     		JMenuItem interactMenuItem = new JMenuItem(interaction.getText());
         	// On clicking any of the interactions, perform the appropriate one with the client
-    		interactMenuItem.addActionListener(listener.new InteractionMenuListener(this, interaction));
+    		interactMenuItem.addActionListener(listener.new InteractionMenuListener(this, interactable, interaction));
     		interactionMenu.add(interactMenuItem);
     	}
     	